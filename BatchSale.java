@@ -0,0 +1,63 @@
+/**
+ * A BatchSale summarizes the result of selling a batch of CoffeeOrders at a Cafe:
+ * which orders were filled, how much inventory they used, and whether the Cafe had to restock.
+ */
+public class BatchSale {
+
+    private final boolean[] sold;
+    private final int nSold;
+    private final int coffeeOunces;
+    private final int sugarPackets;
+    private final int creams;
+    private final boolean restocked;
+
+    BatchSale(boolean[] sold, int nSold, int coffeeOunces, int sugarPackets, int creams, boolean restocked) {
+        this.sold = sold;
+        this.nSold = nSold;
+        this.coffeeOunces = coffeeOunces;
+        this.sugarPackets = sugarPackets;
+        this.creams = creams;
+        this.restocked = restocked;
+    }
+
+    /**
+     * Checks whether an order in the batch was filled.
+     *
+     * @param i the position of the order in the batch
+     * @return true if the order was sold; false otherwise
+     */
+    public boolean isSold(int i) {
+        return this.sold[i];
+    }
+
+    /* Accessors */
+    public int nOrders() {
+        return this.sold.length;
+    }
+
+    public int nSold() {
+        return this.nSold;
+    }
+
+    public int getCoffeeOunces() {
+        return this.coffeeOunces;
+    }
+
+    public int getSugarPackets() {
+        return this.sugarPackets;
+    }
+
+    public int getCreams() {
+        return this.creams;
+    }
+
+    public boolean wasRestocked() {
+        return this.restocked;
+    }
+
+    public String toString() {
+        return this.nSold + " of " + this.sold.length + " orders sold, using " + this.coffeeOunces + "oz coffee, "
+            + this.sugarPackets + " sugar, " + this.creams + " cream, and " + this.nSold + " cups"
+            + (this.restocked ? " (restocked)." : ".");
+    }
+}
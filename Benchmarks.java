@@ -0,0 +1,376 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Benchmarks measures the hot paths of Cafe, Library, House, CampusMap, CampusRoutes, and Building.
+ * Each benchmark is run for every requested data size and thread count: a timed warmup,
+ * then several timed measurement iterations in which every thread calls the operation in a loop.
+ * Results are printed as a summary and written as JSON so they can be tracked over time.
+ *
+ * Usage: java Benchmarks [--sizes 1000,100000] [--threads 1,4] [--time ms] [--iterations n] [--out file.json] [name ...]
+ */
+public class Benchmarks {
+
+    private static volatile int blackhole; // Keeps results alive so the JIT cannot skip the work
+
+    /**
+     * One call of a benchmarked operation. Returns something derived from the work so it is not optimised away.
+     */
+    interface Operation {
+        int run(long i);
+    }
+
+    /**
+     * A benchmark builds fresh state for a data size and returns one Operation per thread.
+     */
+    interface Fixture {
+        Operation[] setUp(int size, int threads);
+    }
+
+    /**
+     * A named benchmark and whether it depends on the data size and can run on several threads.
+     */
+    static class Benchmark {
+        final String name;
+        final boolean sized;
+        final boolean concurrent;
+        final Fixture fixture;
+
+        Benchmark(String name, boolean sized, boolean concurrent, Fixture fixture) {
+            this.name = name;
+            this.sized = sized;
+            this.concurrent = concurrent;
+            this.fixture = fixture;
+        }
+    }
+
+    /**
+     * The measurements from one benchmark at one size and thread count.
+     */
+    static class Result {
+        final String name;
+        final int size;
+        final int threads;
+        final double[] nsPerOp;
+
+        Result(String name, int size, int threads, double[] nsPerOp) {
+            this.name = name;
+            this.size = size;
+            this.threads = threads;
+            this.nsPerOp = nsPerOp;
+        }
+
+        double mean() {
+            double sum = 0;
+            for (double v : this.nsPerOp) {
+                sum += v;
+            }
+            return sum / this.nsPerOp.length;
+        }
+
+        double stdev() {
+            double mean = mean();
+            double sum = 0;
+            for (double v : this.nsPerOp) {
+                sum += (v - mean) * (v - mean);
+            }
+            return this.nsPerOp.length > 1 ? Math.sqrt(sum / (this.nsPerOp.length - 1)) : 0;
+        }
+
+        // Total operations per second across all threads
+        double opsPerSecond() {
+            return this.threads * 1e9 / mean();
+        }
+
+        String toJson() {
+            StringBuilder iterations = new StringBuilder();
+            for (double v : this.nsPerOp) {
+                iterations.append(iterations.length() == 0 ? "" : ", ").append(String.format(Locale.ROOT, "%.3f", v));
+            }
+            return String.format(Locale.ROOT, "{\"benchmark\": \"%s\", \"size\": %d, \"threads\": %d, \"nsPerOp\": %.3f, "
+                                 + "\"nsPerOpStdev\": %.3f, \"opsPerSecond\": %.1f, \"iterations\": [%s]}",
+                                 this.name, this.size, this.threads, mean(), stdev(), opsPerSecond(), iterations);
+        }
+    }
+
+    // Spreads a counter across [0, size) so consecutive calls touch different data
+    private static int scatter(long i, int size) {
+        return (int) Long.remainderUnsigned(i * 0x9E3779B97F4A7C15L, size);
+    }
+
+    private static Operation[] perThread(int threads, Operation op) {
+        Operation[] ops = new Operation[threads];
+        Arrays.fill(ops, op);
+        return ops;
+    }
+
+    static List<Benchmark> all() {
+        List<Benchmark> benchmarks = new ArrayList<>();
+
+        benchmarks.add(new Benchmark("Cafe.sellCoffee", false, true, (size, threads) -> {
+            Cafe cafe = new Cafe("Bench Cafe", "1 Bench Street", 1, 1_000_000, 1_000_000, 1_000_000, 1_000_000);
+            return perThread(threads, i -> {
+                cafe.sellCoffee(12, 1, 1);
+                return 1;
+            });
+        }));
+
+        benchmarks.add(new Benchmark("Cafe.sellCoffee(registers)", false, true, (size, threads) -> {
+            Cafe cafe = new Cafe("Bench Cafe", "1 Bench Street", 1, 1_000_000, 1_000_000, 1_000_000, 1_000_000, threads);
+            return perThread(threads, i -> {
+                cafe.sellCoffee(12, 1, 1);
+                return 1;
+            });
+        }));
+
+        benchmarks.add(new Benchmark("Cafe.sellCoffee(batch)", true, true, (size, threads) -> {
+            Cafe cafe = new Cafe("Bench Cafe", "1 Bench Street", 1, 1_000_000, 1_000_000, 1_000_000, 1_000_000);
+            List<CoffeeOrder> batch = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                batch.add(new CoffeeOrder(8 + i % 3 * 4, i % 3, i % 2));
+            }
+            return perThread(threads, i -> cafe.sellCoffee(batch).nSold());
+        }));
+
+        benchmarks.add(new Benchmark("Library.checkOut+returnBook", true, true, (size, threads) -> {
+            if (size < threads) {
+                throw new RuntimeException("needs at least one title per thread");
+            }
+            Library library = newLibrary(size);
+            String[] titles = titles(size);
+            Operation[] ops = new Operation[threads];
+            for (int t = 0; t < threads; t++) {
+                final int offset = t;
+                ops[t] = i -> {
+                    // Each thread works on its own titles so checkouts never collide
+                    String title = titles[offset + threads * scatter(i, size / threads)];
+                    library.checkOut(title);
+                    library.returnBook(title);
+                    return title.length();
+                };
+            }
+            return ops;
+        }));
+
+        benchmarks.add(new Benchmark("Library.containsTitle", true, true, (size, threads) -> {
+            Library library = newLibrary(size);
+            String[] titles = titles(size);
+            return perThread(threads, i -> library.containsTitle(titles[scatter(i, size)]) ? 1 : 0);
+        }));
+
+        benchmarks.add(new Benchmark("House.moveIn(bulk)", true, false, (size, threads) -> {
+            ArrayList<String> group = new ArrayList<>(Arrays.asList(names(size)));
+            return perThread(threads, i -> {
+                House house = new House("Bench House", "2 Bench Street", 3, true);
+                house.moveIn(group);
+                return house.nResidents();
+            });
+        }));
+
+        benchmarks.add(new Benchmark("House.isResident", true, false, (size, threads) -> {
+            String[] names = names(size);
+            House house = new House("Bench House", "2 Bench Street", 3, true);
+            house.moveIn(new ArrayList<>(Arrays.asList(names)));
+            return perThread(threads, i -> house.isResident(names[scatter(i, size)]) ? 1 : 0);
+        }));
+
+        benchmarks.add(new Benchmark("CampusMap.addBuilding+removeBuilding", true, false, (size, threads) -> {
+            CampusMap map = newMap(size);
+            Building extra = new Building("Extra Hall", "3 Bench Street", 2);
+            return perThread(threads, i -> {
+                map.addBuilding(extra);
+                map.removeBuilding(extra);
+                return 1;
+            });
+        }));
+
+        benchmarks.add(new Benchmark("CampusMap.toString", true, false, (size, threads) -> {
+            CampusMap map = newMap(size);
+            return perThread(threads, i -> map.toString().length());
+        }));
+
+        benchmarks.add(new Benchmark("CampusRoutes.distance", true, false, (size, threads) -> {
+            CampusMap map = newMap(size);
+            CampusRoutes routes = map.routes();
+            Building[] buildings = map.getBuildings().toArray(new Building[0]);
+            for (int i = 1; i < size; i++) {
+                routes.addWalkway(buildings[i - 1], buildings[i], 10 + i % 90); // A chain, plus shortcuts every few buildings
+                routes.addWalkway(buildings[i], buildings[scatter(i, i)], 50 + i % 200);
+            }
+            return perThread(threads, i -> (int) routes.distance(buildings[(int) (i % 16)], buildings[scatter(i, size)]));
+        }));
+
+        benchmarks.add(new Benchmark("Building.goToFloor", false, true, (size, threads) -> {
+            Building building = new Building("Bench Hall", "4 Bench Street", 10);
+            Operation[] ops = new Operation[threads];
+            for (int t = 0; t < threads; t++) {
+                Visitor visitor = building.enter(); // Every thread moves its own visitor around the same building
+                ops[t] = i -> {
+                    int floor = 1 + (int) (i % 10);
+                    visitor.goToFloor(floor);
+                    return floor;
+                };
+            }
+            return ops;
+        }));
+
+        return benchmarks;
+    }
+
+    private static String[] titles(int size) {
+        String[] titles = new String[size];
+        for (int i = 0; i < size; i++) {
+            titles[i] = "Title " + i;
+        }
+        return titles;
+    }
+
+    private static String[] names(int size) {
+        String[] names = new String[size];
+        for (int i = 0; i < size; i++) {
+            names[i] = "Resident " + i;
+        }
+        return names;
+    }
+
+    private static Library newLibrary(int size) {
+        Library library = new Library("Bench Library", "5 Bench Street", 4, true);
+        library.addTitle(new ArrayList<>(Arrays.asList(titles(size))));
+        return library;
+    }
+
+    private static CampusMap newMap(int size) {
+        CampusMap map = new CampusMap();
+        for (int i = 0; i < size; i++) {
+            map.addBuilding(new Building("Hall " + i, i + " Campus Road", 1 + i % 5));
+        }
+        return map;
+    }
+
+    /**
+     * Runs one benchmark at one size and thread count.
+     *
+     * @return the average nanoseconds per operation for each measurement iteration
+     */
+    static double[] measure(Benchmark benchmark, int size, int threads, long iterationMillis, int iterations) throws InterruptedException {
+        Operation[] ops = benchmark.fixture.setUp(size, threads);
+        runIteration(ops, iterationMillis); // Warmup
+        double[] nsPerOp = new double[iterations];
+        for (int k = 0; k < iterations; k++) {
+            long[] counts = runIteration(ops, iterationMillis);
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            nsPerOp[k] = (double) iterationMillis * 1_000_000L * threads / Math.max(total, 1);
+        }
+        return nsPerOp;
+    }
+
+    // Runs every thread's operation in a loop for the given time and returns how many calls each thread made
+    private static long[] runIteration(Operation[] ops, long millis) throws InterruptedException {
+        int threads = ops.length;
+        long[] counts = new long[threads];
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int index = t;
+            workers[t] = new Thread(() -> {
+                Operation op = ops[index];
+                int acc = 0;
+                long i = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (running.get()) {
+                    acc += op.run(i++);
+                }
+                counts[index] = i;
+                blackhole += acc;
+            }, "bench-" + t);
+            workers[t].start();
+        }
+        start.countDown();
+        Thread.sleep(millis);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return counts;
+    }
+
+    private static int[] parseList(String value) {
+        return Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        int[] sizes = {1_000, 100_000};
+        int[] threadCounts = {1, Runtime.getRuntime().availableProcessors()};
+        long iterationMillis = 1_000;
+        int iterations = 5;
+        String out = null;
+        List<String> only = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sizes": sizes = parseList(args[++i]); break;
+                case "--threads": threadCounts = parseList(args[++i]); break;
+                case "--time": iterationMillis = Long.parseLong(args[++i]); break;
+                case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+                case "--out": out = args[++i]; break;
+                default: only.add(args[i]);
+            }
+        }
+
+        Building.setEventSink(EventSink.NONE); // Measure the operations, not the console
+
+        List<Result> results = new ArrayList<>();
+        for (Benchmark benchmark : all()) {
+            if (!only.isEmpty() && only.stream().noneMatch(benchmark.name::startsWith)) {
+                continue;
+            }
+            for (int size : benchmark.sized ? sizes : new int[] {0}) {
+                for (int threads : benchmark.concurrent ? threadCounts : new int[] {1}) {
+                    double[] nsPerOp;
+                    try {
+                        nsPerOp = measure(benchmark, size, threads, iterationMillis, iterations);
+                    } catch (RuntimeException e) {
+                        System.err.printf("%-40s size=%-8d threads=%-3d skipped: %s%n", benchmark.name, size, threads, e.getMessage());
+                        continue;
+                    }
+                    Result result = new Result(benchmark.name, size, threads, nsPerOp);
+                    results.add(result);
+                    System.err.printf("%-40s size=%-8d threads=%-3d %12.1f ns/op  %14.0f ops/s%n",
+                                      result.name, result.size, result.threads, result.mean(), result.opsPerSecond());
+                }
+            }
+        }
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"javaVersion\": \"").append(System.getProperty("java.version"))
+            .append("\",\n  \"timestamp\": ").append(System.currentTimeMillis())
+            .append(",\n  \"iterationMillis\": ").append(iterationMillis)
+            .append(",\n  \"results\": [");
+        for (int i = 0; i < results.size(); i++) {
+            json.append(i == 0 ? "\n    " : ",\n    ").append(results.get(i).toJson());
+        }
+        json.append("\n  ]\n}\n");
+
+        if (out == null) {
+            System.out.print(json);
+        } else {
+            try (FileWriter writer = new FileWriter(out)) {
+                writer.write(json.toString());
+            }
+        }
+    }
+}
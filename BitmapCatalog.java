@@ -0,0 +1,321 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * A BitmapCatalog gives each title a dense int id from a StringTable and keeps its state in two bits of a shared bitmap:
+ * one for whether the title is in the catalog and one for whether it is available. A title then costs its UTF-8 bytes
+ * plus about a dozen bytes of table, instead of a map entry, a String, and its byte array.
+ * Both bits of a title sit in the same long, so checking out, returning, adding, or removing a title is one compare-and-set.
+ * Scanning for available titles walks the bitmap a long at a time, 32 titles per step.
+ *
+ * Lookups read the string table optimistically under a StampedLock and only wait if a new title was added meanwhile.
+ * Adding a title not seen before takes the write lock; every other change shares the read lock, so the bitmap is never
+ * replaced underneath it. A removed title keeps its id and its bytes until more than half the ids belong to removed titles;
+ * then the table and bitmap are rebuilt with only the titles still in the catalog, so adding and removing titles over and
+ * over does not grow memory without bound. Rebuilding renumbers the titles, so it waits while anyone is iterating.
+ */
+class BitmapCatalog implements Catalog {
+
+    private static final int ABSENT = 0;
+    private static final int CHECKED_OUT = 1; // In the catalog
+    private static final int AVAILABLE = 3; // In the catalog and available
+    private static final long AVAILABLE_BITS = 0xAAAAAAAAAAAAAAAAL; // The available bit of every title in a long
+    private static final int CHUNK = 1024; // Titles decoded per read lock while iterating
+    private static final int MIN_COMPACT = 64; // Tables with fewer ids than this are never rebuilt
+
+    private final StampedLock lock = new StampedLock();
+    private StringTable titles = new StringTable(); // Only changed or replaced under the write lock
+    private volatile AtomicLongArray states = new AtomicLongArray(1); // Title id i uses bits 2i and 2i + 1; only replaced under the write lock
+    private final LongAdder nTitles = new LongAdder();
+    private final LongAdder nAvailable = new LongAdder();
+    private final AtomicInteger nIterating = new AtomicInteger(); // forEach and forEachAvailable calls in progress
+
+    @Override
+    public boolean add(String title, boolean available) {
+        int state = available ? AVAILABLE : CHECKED_OUT;
+        long stamp = this.lock.readLock();
+        try {
+            int id = this.titles.lookup(title);
+            if (id < 0) {
+                long write = this.lock.tryConvertToWriteLock(stamp);
+                if (write == 0) {
+                    this.lock.unlockRead(stamp);
+                    write = this.lock.writeLock();
+                }
+                stamp = write;
+                id = this.titles.intern(title);
+                ensureCapacity(id);
+            }
+            if (!transition(id, ABSENT, state)) {
+                return false;
+            }
+        } finally {
+            this.lock.unlock(stamp);
+        }
+        this.nTitles.increment();
+        if (available) {
+            this.nAvailable.increment();
+        }
+        return true;
+    }
+
+    @Override
+    public Boolean remove(String title) {
+        int previous = swap(title, ABSENT);
+        if (previous == ABSENT) {
+            return null;
+        }
+        this.nTitles.decrement();
+        if (previous == AVAILABLE) {
+            this.nAvailable.decrement();
+        }
+        if (needsCompacting()) {
+            compact();
+        }
+        return previous == AVAILABLE;
+    }
+
+    @Override
+    public boolean checkOut(String title) {
+        long stamp = this.lock.readLock();
+        try {
+            int id = this.titles.lookup(title);
+            if (id < 0 || !transition(id, AVAILABLE, CHECKED_OUT)) {
+                return false;
+            }
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+        this.nAvailable.decrement();
+        return true;
+    }
+
+    @Override
+    public Boolean checkIn(String title) {
+        int previous = swap(title, AVAILABLE);
+        if (previous == ABSENT) {
+            return null;
+        }
+        if (previous == CHECKED_OUT) {
+            this.nAvailable.increment();
+        }
+        return previous == AVAILABLE;
+    }
+
+    @Override
+    public Boolean get(String title) {
+        int state = ABSENT;
+        long stamp = this.lock.tryOptimisticRead();
+        boolean read = false;
+        if (stamp != 0) {
+            try {
+                state = state(title);
+                read = this.lock.validate(stamp);
+            } catch (RuntimeException e) {
+                // A title was being added and the table was caught half grown; read it again under the lock
+            }
+        }
+        if (!read) {
+            stamp = this.lock.readLock();
+            try {
+                state = state(title);
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return state == ABSENT ? null : state == AVAILABLE;
+    }
+
+    @Override
+    public int size() {
+        return this.nTitles.intValue();
+    }
+
+    @Override
+    public long nAvailable() {
+        return this.nAvailable.sum();
+    }
+
+    @Override
+    public long nCheckedOut() {
+        return Math.max(this.nTitles.sum() - this.nAvailable.sum(), 0); // The two counts can briefly disagree while titles are changing
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, Boolean> action) {
+        String[] chunk = new String[CHUNK];
+        boolean[] available = new boolean[CHUNK];
+        this.nIterating.incrementAndGet(); // Before the first read lock, so the ids cannot be renumbered between chunks
+        try {
+            forEach(action, chunk, available);
+        } finally {
+            this.nIterating.decrementAndGet();
+        }
+    }
+
+    private void forEach(BiConsumer<String, Boolean> action, String[] chunk, boolean[] available) {
+        for (int from = 0; ; from += CHUNK) {
+            int n = 0;
+            long stamp = this.lock.readLock();
+            try {
+                int to = Math.min(from + CHUNK, this.titles.size());
+                if (from >= to) {
+                    return;
+                }
+                AtomicLongArray states = this.states;
+                for (int id = from; id < to; id++) {
+                    int state = state(states, id);
+                    if (state != ABSENT) {
+                        chunk[n] = this.titles.get(id);
+                        available[n++] = state == AVAILABLE;
+                    }
+                }
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+            // The action runs without the lock, so it may use the catalog itself
+            for (int i = 0; i < n; i++) {
+                action.accept(chunk[i], available[i]);
+            }
+        }
+    }
+
+    @Override
+    public void forEachAvailable(Consumer<String> action) {
+        String[] chunk = new String[CHUNK];
+        this.nIterating.incrementAndGet();
+        try {
+            forEachAvailable(action, chunk);
+        } finally {
+            this.nIterating.decrementAndGet();
+        }
+    }
+
+    private void forEachAvailable(Consumer<String> action, String[] chunk) {
+        for (int word = 0; ; word += CHUNK / 32) {
+            int n = 0;
+            long stamp = this.lock.readLock();
+            try {
+                AtomicLongArray states = this.states;
+                int words = Math.min(word + CHUNK / 32, (this.titles.size() + 31) >>> 5);
+                if (word >= words) {
+                    return;
+                }
+                for (int w = word; w < words; w++) {
+                    for (long bits = states.get(w) & AVAILABLE_BITS; bits != 0; bits &= bits - 1) {
+                        chunk[n++] = this.titles.get((w << 5) + (Long.numberOfTrailingZeros(bits) >>> 1));
+                    }
+                }
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+            for (int i = 0; i < n; i++) {
+                action.accept(chunk[i]);
+            }
+        }
+    }
+
+    // The state of a title, or ABSENT if it has no id; must be called under the lock or inside an optimistic read
+    private int state(String title) {
+        int id = this.titles.lookup(title);
+        return id < 0 ? ABSENT : state(this.states, id);
+    }
+
+    private static int state(AtomicLongArray states, int id) {
+        return (int) (states.get(id >>> 5) >>> ((id & 31) << 1)) & 3;
+    }
+
+    // Moves a title from one state to another; must hold the lock. Returns false if it was not in the expected state.
+    private boolean transition(int id, int from, int to) {
+        AtomicLongArray states = this.states;
+        int word = id >>> 5;
+        int shift = (id & 31) << 1;
+        while (true) {
+            long bits = states.get(word);
+            if ((int) (bits >>> shift & 3) != from) {
+                return false;
+            }
+            if (states.compareAndSet(word, bits, bits & ~(3L << shift) | (long) to << shift)) {
+                return true;
+            }
+        }
+    }
+
+    // Sets the state of a title that is in the catalog, and returns the state it was in (ABSENT if it was not there)
+    private int swap(String title, int to) {
+        long stamp = this.lock.readLock();
+        try {
+            int id = this.titles.lookup(title);
+            if (id < 0) {
+                return ABSENT;
+            }
+            AtomicLongArray states = this.states;
+            int word = id >>> 5;
+            int shift = (id & 31) << 1;
+            while (true) {
+                long bits = states.get(word);
+                int previous = (int) (bits >>> shift & 3);
+                if (previous == ABSENT || states.compareAndSet(word, bits, bits & ~(3L << shift) | (long) to << shift)) {
+                    return previous;
+                }
+            }
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    // Grows the bitmap to hold the given id; must hold the write lock
+    private void ensureCapacity(int id) {
+        AtomicLongArray states = this.states;
+        int words = (id >>> 5) + 1;
+        if (words > states.length()) {
+            AtomicLongArray grown = new AtomicLongArray(Math.max(words, states.length() * 2));
+            for (int w = 0; w < states.length(); w++) {
+                grown.set(w, states.get(w));
+            }
+            this.states = grown;
+        }
+    }
+
+    // Whether more than half the ids belong to removed titles; the counts may be a little stale, so compact() checks again
+    private boolean needsCompacting() {
+        int ids = this.titles.size();
+        return ids > MIN_COMPACT && this.nTitles.sum() * 2 < ids && this.nIterating.get() == 0;
+    }
+
+    // Rebuilds the string table and bitmap with only the titles still in the catalog, keeping their order and states
+    private void compact() {
+        long stamp = this.lock.writeLock();
+        try {
+            StringTable titles = this.titles;
+            AtomicLongArray states = this.states;
+            int ids = titles.size();
+            int live = 0;
+            for (int id = 0; id < ids; id++) {
+                if (state(states, id) != ABSENT) {
+                    live++;
+                }
+            }
+            if (ids <= MIN_COMPACT || live * 2 >= ids || this.nIterating.get() != 0) {
+                return; // Another remove compacted first, titles were added meanwhile, or an iteration started
+            }
+            StringTable kept = new StringTable();
+            AtomicLongArray keptStates = new AtomicLongArray(Math.max(1, (live + 31) >>> 5));
+            for (int id = 0; id < ids; id++) {
+                int state = state(states, id);
+                if (state != ABSENT) {
+                    int keptId = kept.intern(titles.get(id));
+                    keptStates.set(keptId >>> 5, keptStates.get(keptId >>> 5) | (long) state << ((keptId & 31) << 1));
+                }
+            }
+            this.titles = kept;
+            this.states = keptStates;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+}
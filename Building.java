@@ -1,9 +1,27 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
 public class Building {
 
+    private static volatile EventSink eventSink = new ConsoleEventSink(); // Where every Building publishes its activity
+    private static final EventPublisher[] NO_RELAYS = new EventPublisher[0];
+    private static final String NOT_INSIDE_TO_EXIT = "You are not inside this Building. Must call enter() before exit().";
+    private static final String NOT_INSIDE_TO_NAVIGATE = "You are not inside this Building. Must call enter() before navigating between floors.";
+
     protected String name;
     protected String address;
     protected int nFloors;
-    protected int activeFloor = -1; // Default value indicating we are not inside this building
+    private final LongAdder nVisitors = new LongAdder(); // Visitors currently inside
+    private final AtomicReference<Visitor> lead = new AtomicReference<>(); // The visitor that enter()/exit()/goToFloor(n) on the building itself act for, or null
+    private final Set<Visitor> inside = ConcurrentHashMap.newKeySet(); // Every visitor inside, so another can take over when the lead leaves
+    private volatile BuildingMetrics metrics; // Created the first time an operation is recorded
+    private volatile Occupancy occupancy; // Created when the first visitor enters, or when first asked for
+    private volatile EventPublisher events; // Created when first asked for
+    private volatile EventPublisher[] relays = NO_RELAYS; // The event streams of the CampusMaps this building is on, if they have one
 
     /* Default constructor */
     public Building() {
@@ -44,45 +62,392 @@ public class Building {
         return this.nFloors;
     }
 
-    /* Navigation methods */
-    public Building enter() {
-        if (activeFloor != -1) {
-            throw new RuntimeException("You are already inside this Building.");
+    /**
+     * Gets the number of visitors currently inside this building.
+     *
+     * @return the number of visitors who have entered and not yet exited
+     */
+    public int nVisitors() {
+        return this.nVisitors.intValue();
+    }
+
+    /**
+     * Gets the sink that all Buildings and CampusMaps publish their events to.
+     *
+     * @return the current event sink
+     */
+    public static EventSink getEventSink() {
+        return eventSink;
+    }
+
+    /**
+     * Replaces the sink that all Buildings and CampusMaps publish their events to.
+     *
+     * @param sink the new event sink; use EventSink.NONE to discard events
+     */
+    public static void setEventSink(EventSink sink) {
+        if (sink == null) {
+            throw new RuntimeException("Event sink cannot be null. Use EventSink.NONE to discard events.");
         }
-        this.activeFloor = 1;
-        System.out.println("You are now inside " + this.name + " on the ground floor.");
-        return this; // Return a pointer to the current building
+        eventSink = sink;
     }
 
-    public Building exit() {
-        if (this.activeFloor == -1) {
-            throw new RuntimeException("You are not inside this Building. Must call enter() before exit().");
+    /**
+     * Publishes an event about this building to the current event sink,
+     * and to anyone subscribed to this building's events or those of a CampusMap it is on.
+     *
+     * @param type    the kind of activity
+     * @param subject what the activity was about, or null
+     * @param amount  a numeric detail of the activity, or 0
+     */
+    protected void publish(BuildingEvent.Type type, String subject, int amount) {
+        EventSink sink = eventSink;
+        EventPublisher own = this.events;
+        EventPublisher[] maps = this.relays;
+        boolean streamed = own != null && own.hasSubscribers();
+        for (int i = 0; i < maps.length && !streamed; i++) {
+            streamed = maps[i].hasSubscribers();
         }
-        if (this.activeFloor > 1) {
-            throw new RuntimeException("You have fallen out a window from floor #" +this.activeFloor + "!");
+        if (sink == EventSink.NONE && !streamed) {
+            return; // Nothing to build an event for when it would be thrown away
+        }
+        BuildingEvent event = new BuildingEvent(type, this.name, subject, amount);
+        if (sink != EventSink.NONE) {
+            sink.publish(event);
+        }
+        if (streamed) {
+            if (own != null) {
+                own.publish(event);
+            }
+            for (EventPublisher map : maps) {
+                map.publish(event);
+            }
         }
-        System.out.println("You have left " + this.name + ".");
-        this.activeFloor = -1; // We're leaving the building, so we no longer have a valid active floor
-        return null; // We're outside now, so the building is null
     }
 
-    public void goToFloor(int floorNum) {
-        if (this.activeFloor == -1) {
-            throw new RuntimeException("You are not inside this Building. Must call enter() before navigating between floors.");
+    /**
+     * Gets the stream of this building's activity, creating it on first use.
+     * Subscribers receive every event this building publishes from then on, whatever the event sink is,
+     * each at its own pace; a subscriber that falls too far behind misses events rather than slowing the building down.
+     *
+     * @return this building's event stream
+     */
+    public EventPublisher events() {
+        EventPublisher current = this.events;
+        if (current == null) {
+            synchronized (this) {
+                current = this.events;
+                if (current == null) {
+                    current = new EventPublisher();
+                    this.events = current;
+                }
+            }
         }
-        if (floorNum < 1 || floorNum > this.nFloors) {
-            throw new RuntimeException("Invalid floor number. Valid range for this Building is 1-" + this.nFloors +".");
+        return current;
+    }
+
+    /*
+     * Called by CampusMap to have this building's events also go to the map's stream while it is on the map.
+     */
+
+    synchronized void relayTo(EventPublisher map) {
+        EventPublisher[] next = Arrays.copyOf(this.relays, this.relays.length + 1);
+        next[next.length - 1] = map;
+        this.relays = next;
+    }
+
+    synchronized void stopRelaying(EventPublisher map) {
+        EventPublisher[] current = this.relays;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == map) {
+                EventPublisher[] next = new EventPublisher[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, next.length - i);
+                this.relays = next;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the counters, latency histograms, and gauges for this building, creating them on first use.
+     *
+     * @return this building's metrics
+     */
+    public BuildingMetrics metrics() {
+        BuildingMetrics current = this.metrics;
+        if (current == null) {
+            synchronized (this) {
+                current = this.metrics;
+                if (current == null) {
+                    current = new BuildingMetrics(this, this::gauges);
+                    this.metrics = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Gets the per-floor visitor counts and capacity limits for this building, creating them on first use.
+     *
+     * @return this building's occupancy
+     */
+    public Occupancy occupancy() {
+        Occupancy current = this.occupancy;
+        if (current == null) {
+            synchronized (this) {
+                current = this.occupancy;
+                if (current == null) {
+                    current = new Occupancy(this);
+                    this.occupancy = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Publishes this building's metrics over JMX.
+     */
+    public void registerMBean() {
+        metrics().register();
+    }
+
+    /**
+     * Fills in readings of this building's current state for its metrics.
+     * Subclasses add their own gauges, such as inventory levels or resident counts.
+     *
+     * @param gauges the map to add gauge readings to
+     */
+    protected void gauges(Map<String, Long> gauges) {
+        gauges.put("floors", (long) this.nFloors);
+        gauges.put("visitors", this.nVisitors.longValue());
+    }
+
+    /* Navigation methods */
+
+    /**
+     * Enters the building on the ground floor. Any number of visitors can be inside at once;
+     * each gets its own Visitor to move around with.
+     * The first visitor inside is also the one that exit(), goToFloor(n), goUp(), and goDown() on the building act for;
+     * when it leaves, another visitor still inside takes its place.
+     * If the building or its ground floor has a capacity, the occupancy policy decides what happens when it is full.
+     *
+     * @return the new visitor
+     * @throws RuntimeException if the building or its ground floor is full and the visitor is turned away
+     */
+    public Visitor enter() {
+        long start = System.nanoTime();
+        Status status = occupancy().enter();
+        if (status != Status.OK) {
+            throw failure(status, null, 1, null);
         }
-        System.out.println("You are now on floor #" + floorNum + " of " + this.name);
-        this.activeFloor = floorNum;
+        return admitted(start);
+    }
+
+    /**
+     * Enters the building on the ground floor, like enter(), but reports a full building by returning null instead of throwing.
+     * Being turned away allocates nothing; getting in allocates the new Visitor and its entry among the visitors inside.
+     *
+     * @return the new visitor, or null if the building or its ground floor is full and the visitor was turned away
+     */
+    public Visitor tryEnter() {
+        long start = System.nanoTime();
+        return occupancy().enter() == Status.OK ? admitted(start) : null;
+    }
+
+    private Visitor admitted(long start) {
+        Visitor visitor = new Visitor(this);
+        this.nVisitors.increment();
+        this.inside.add(visitor);
+        this.lead.compareAndSet(null, visitor);
+        publish(BuildingEvent.Type.ENTERED, null, 1);
+        metrics().record(BuildingMetrics.Op.ENTER, start);
+        return visitor;
+    }
+
+    public Building exit() {
+        exit(lead(NOT_INSIDE_TO_EXIT));
+        return null; // We're outside now, so the building is null
+    }
+
+    public void goToFloor(int floorNum) {
+        goToFloor(lead(NOT_INSIDE_TO_NAVIGATE), floorNum);
     }
 
     public void goUp() {
-        this.goToFloor(this.activeFloor + 1);
+        Visitor visitor = lead(NOT_INSIDE_TO_NAVIGATE);
+        this.goToFloor(visitor, visitor.getFloor() + 1);
     }
 
     public void goDown() {
-        this.goToFloor(this.activeFloor - 1);
+        Visitor visitor = lead(NOT_INSIDE_TO_NAVIGATE);
+        this.goToFloor(visitor, visitor.getFloor() - 1);
+    }
+
+    private Visitor lead(String notInside) {
+        Visitor visitor = this.lead.get();
+        if (visitor == null) {
+            throw new RuntimeException(notInside);
+        }
+        return visitor;
+    }
+
+    // Hands the building's own navigation methods to another visitor still inside, once the lead has left
+    private void promoteLead() {
+        while (this.lead.get() == null) {
+            Visitor next = null;
+            for (Visitor v : this.inside) {
+                if (v.isInside()) {
+                    next = v;
+                    break;
+                }
+            }
+            if (next == null || !this.lead.compareAndSet(null, next)) {
+                return; // Nobody left inside, or a visitor just entered and took over
+            }
+            if (next.isInside()) {
+                return;
+            }
+            this.lead.compareAndSet(next, null); // It left while being chosen; choose again
+        }
+    }
+
+    /**
+     * Checks that a visitor is inside this building.
+     *
+     * @param visitor the visitor to check
+     * @return OK, or NOT_INSIDE or WRONG_BUILDING
+     */
+    protected Status checkVisitor(Visitor visitor) {
+        if (visitor.getBuilding() != this) {
+            return Status.WRONG_BUILDING;
+        }
+        return visitor.isInside() ? Status.OK : Status.NOT_INSIDE;
+    }
+
+    /**
+     * Lets a visitor leave the building. Called by Visitor.exit().
+     *
+     * @param visitor the visitor leaving
+     * @throws RuntimeException if the visitor is not inside or is above the ground floor
+     */
+    protected void exit(Visitor visitor) {
+        int floorNum = visitor.floor;
+        Status status = tryExit(visitor);
+        if (status != Status.OK) {
+            throw failure(status, visitor, floorNum, NOT_INSIDE_TO_EXIT);
+        }
+    }
+
+    /**
+     * Lets a visitor leave the building, reporting why not instead of throwing. Called by Visitor.tryExit().
+     *
+     * @param visitor the visitor leaving
+     * @return OK, or NOT_INSIDE, WRONG_BUILDING, or ABOVE_GROUND_FLOOR
+     */
+    protected Status tryExit(Visitor visitor) {
+        long start = System.nanoTime();
+        Status status = checkVisitor(visitor);
+        if (status != Status.OK) {
+            return status;
+        }
+        if (visitor.floor > 1) {
+            return Status.ABOVE_GROUND_FLOOR;
+        }
+        occupancy().exit(visitor.floor);
+        publish(BuildingEvent.Type.EXITED, null, 0);
+        visitor.floor = -1; // The visitor is leaving the building, so it no longer has a valid floor
+        this.nVisitors.decrement();
+        this.inside.remove(visitor);
+        if (this.lead.compareAndSet(visitor, null)) {
+            promoteLead();
+        }
+        metrics().record(BuildingMetrics.Op.EXIT, start);
+        return Status.OK;
+    }
+
+    /**
+     * Moves a visitor to the specified floor. Called by Visitor.goToFloor(n).
+     *
+     * @param visitor  the visitor moving
+     * @param floorNum the floor number to navigate to
+     * @throws RuntimeException if the visitor is not inside, the floor does not exist, or the floor is full and the visitor is turned away
+     */
+    protected void goToFloor(Visitor visitor, int floorNum) {
+        Status status = tryGoToFloor(visitor, floorNum);
+        if (status != Status.OK) {
+            throw failure(status, visitor, floorNum, NOT_INSIDE_TO_NAVIGATE);
+        }
+    }
+
+    /**
+     * Moves a visitor to the specified floor, reporting why not instead of throwing. Called by Visitor.tryGoToFloor(n).
+     * Subclasses override this to add their own rules for moving between floors.
+     * If the new floor has a capacity, the occupancy policy decides what happens when it is full.
+     *
+     * @param visitor  the visitor moving
+     * @param floorNum the floor number to navigate to
+     * @return OK, or NOT_INSIDE, WRONG_BUILDING, INVALID_FLOOR, FULL, or INTERRUPTED
+     */
+    protected Status tryGoToFloor(Visitor visitor, int floorNum) {
+        long start = System.nanoTime();
+        Status status = checkVisitor(visitor);
+        if (status != Status.OK) {
+            return status;
+        }
+        if (floorNum < 1 || floorNum > this.nFloors) {
+            return Status.INVALID_FLOOR;
+        }
+        status = occupancy().move(visitor.floor, floorNum);
+        if (status != Status.OK) {
+            return status;
+        }
+        publish(BuildingEvent.Type.FLOOR_CHANGED, null, floorNum);
+        visitor.floor = floorNum;
+        metrics().record(BuildingMetrics.Op.GO_TO_FLOOR, start);
+        return Status.OK;
+    }
+
+    /**
+     * Builds the exception a throwing navigation method raises when its try method fails.
+     * Subclasses that return statuses of their own from tryGoToFloor describe them here.
+     *
+     * @param status    why the operation failed
+     * @param visitor   the visitor, or null when entering
+     * @param floorNum  the floor the visitor was on or was going to
+     * @param notInside the message for a visitor who is not inside
+     * @return the exception to throw
+     */
+    protected RuntimeException failure(Status status, Visitor visitor, int floorNum, String notInside) {
+        switch (status) {
+            case NOT_INSIDE:
+                return new RuntimeException(notInside);
+            case WRONG_BUILDING:
+                return new RuntimeException("That visitor is inside " + visitor.getBuilding().getName() + ", not " + this.name + ".");
+            case INVALID_FLOOR:
+                return new RuntimeException("Invalid floor number. Valid range for this Building is 1-" + this.nFloors +".");
+            case ABOVE_GROUND_FLOOR:
+                return new RuntimeException("You have fallen out a window from floor #" + floorNum + "!");
+            case FULL:
+                return new RuntimeException(visitor == null ? this.name + " is full." : "Floor #" + floorNum + " of " + this.name + " is full.");
+            case INTERRUPTED:
+                return new RuntimeException("Interrupted while waiting for room in " + this.name + ".");
+            case NO_ELEVATOR:
+                return new RuntimeException("This building does not have an elevator. You can only move to adjacent floors.");
+            case NOT_FOUND:
+                return new RuntimeException("That could not be found in " + this.name + ".");
+            case ALREADY_PRESENT:
+                return new RuntimeException("That is already in " + this.name + ".");
+            case UNAVAILABLE:
+                return new RuntimeException("That is not available in " + this.name + " right now.");
+            case OUT_OF_STOCK:
+                return new RuntimeException(this.name + " does not have enough in stock.");
+            case OK:
+            default:
+                return new RuntimeException("Nothing went wrong in " + this.name + ", so there is no failure to report.");
+        }
     }
 
     public void showOptions() {
@@ -109,6 +474,36 @@ public class Building {
         fordHall.goUp();
         fordHall.goDown();
         fordHall.exit();
+
+        System.out.println("------------------------------------");
+        System.out.println("Demonstrating several visitors at once");
+        System.out.println("------------------------------------");
+        Visitor first = fordHall.enter();
+        Visitor second = fordHall.enter();
+        first.goToFloor(3);
+        second.goUp();
+        System.out.println(first);
+        System.out.println(second);
+        System.out.println(fordHall.nVisitors() + " visitors inside " + fordHall.getName() + ".");
+        first.goToFloor(1);
+        first.exit();
+        second.goDown();
+        second.exit();
+
+        System.out.println("------------------------------------");
+        System.out.println("Demonstrating occupancy limits");
+        System.out.println("------------------------------------");
+        fordHall.occupancy().setFloorCapacity(4, 1);
+        Visitor early = fordHall.enter();
+        Visitor late = fordHall.enter();
+        early.goToFloor(4);
+        try {
+            late.goToFloor(4);
+        } catch (RuntimeException e) {
+            System.out.println(e.getMessage());
+        }
+        System.out.println("Trying floor #4 again: " + late.tryGoToFloor(4));
+        System.out.println(fordHall.occupancy());
     }
 
 }
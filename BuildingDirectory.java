@@ -0,0 +1,58 @@
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * A BuildingDirectory is how a CampusMap stores its buildings: in the order they were added,
+ * with lookups by name and by address.
+ * IndexedDirectory keeps every Building object; CompactDirectory keeps plain Buildings as columns of numbers
+ * and only makes Building objects for them when asked.
+ */
+interface BuildingDirectory extends Iterable<Building> {
+
+    /**
+     * Adds a building at the end of the directory. A building already in the directory is listed again.
+     *
+     * @return true if the building was not already in the directory
+     */
+    boolean add(Building b);
+
+    /**
+     * Removes a building's earliest listing from the directory.
+     *
+     * @return the building as the directory held it, which may be a different but equal object, or null if it was not there
+     */
+    Building remove(Building b);
+
+    /**
+     * Checks whether a building is listed in the directory at least once.
+     */
+    boolean contains(Building b);
+
+    /**
+     * Finds the first building added with a name, or null if there is none.
+     */
+    Building firstByName(String name);
+
+    /**
+     * Finds the first building added at an address, or null if there is none.
+     */
+    Building firstByAddress(String address);
+
+    int size();
+
+    /**
+     * Passes each building's name and address to the listing, in directory order, without making Building objects.
+     */
+    void forEachListing(BiConsumer<String, String> listing);
+
+    /**
+     * Passes each building to the action once, at its earliest listing, however many times it is listed.
+     */
+    void forEachDistinct(Consumer<Building> action);
+
+    /**
+     * From now on, returns the same Building object for a building every time, including for buildings added later,
+     * so callers can use the objects as keys.
+     */
+    void retainAll();
+}
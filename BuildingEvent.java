@@ -0,0 +1,109 @@
+/**
+ * A BuildingEvent records something that happened in a Building or on a CampusMap,
+ * such as a visitor entering, a coffee being sold, or a building being added to the map.
+ * Events carry structured fields; the human-readable message is only formatted when a sink asks for it.
+ */
+public class BuildingEvent {
+
+    /**
+     * The kinds of activity a Building or CampusMap can report.
+     */
+    public enum Type {
+        BUILT,
+        ENTERED,
+        EXITED,
+        FLOOR_CHANGED,
+        COFFEE_SOLD,
+        BATCH_SOLD,
+        RESTOCKED,
+        BUILDING_ADDED,
+        BUILDING_REMOVED,
+        MOVED_IN,
+        MOVED_OUT,
+        CHECKED_OUT,
+        RETURNED
+    }
+
+    private final Type type;
+    private final String building;
+    private final String subject;
+    private final int amount;
+    private final long timestamp;
+
+    /**
+     * Constructs a new BuildingEvent.
+     *
+     * @param type     the kind of activity
+     * @param building the name of the building the activity happened in
+     * @param subject  what the activity was about (e.g. the restocked resource), or null
+     * @param amount   a numeric detail of the activity (e.g. the floor number), or 0
+     */
+    public BuildingEvent(Type type, String building, String subject, int amount) {
+        this.type = type;
+        this.building = building;
+        this.subject = subject;
+        this.amount = amount;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    /* Accessors */
+    public Type getType() {
+        return this.type;
+    }
+
+    public String getBuilding() {
+        return this.building;
+    }
+
+    public String getSubject() {
+        return this.subject;
+    }
+
+    public int getAmount() {
+        return this.amount;
+    }
+
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     * Formats the event as the message a visitor would see.
+     * Activity that has never printed a message, such as residents moving in or books being checked out, has none.
+     *
+     * @return the human-readable message for this event, or null if there is none
+     */
+    public String toMessage() {
+        switch (this.type) {
+            case BUILT:
+                return "You have built a " + this.subject + "!";
+            case ENTERED:
+                return "You are now inside " + this.building + " on the ground floor.";
+            case EXITED:
+                return "You have left " + this.building + ".";
+            case FLOOR_CHANGED:
+                return "You are now on floor #" + this.amount + " of " + this.building;
+            case COFFEE_SOLD:
+                return "Coffee sold!";
+            case BATCH_SOLD:
+                return this.amount + " coffees sold!";
+            case RESTOCKED:
+                return this.subject + " restocked!";
+            case BUILDING_ADDED:
+                return "Adding building...\n-->Successfully added " + this.building + " to the map.";
+            case BUILDING_REMOVED:
+                return "Removing building...\n-->Successfully removed " + this.building + " to the map.";
+            case MOVED_IN:
+            case MOVED_OUT:
+            case CHECKED_OUT:
+            case RETURNED:
+                return null;
+            default:
+                return this.type + " " + this.building;
+        }
+    }
+
+    public String toString() {
+        return this.type + " at " + this.building + (this.subject != null ? " (" + this.subject + ")" : "") + ": " + this.amount;
+    }
+}
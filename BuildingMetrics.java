@@ -0,0 +1,169 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * BuildingMetrics counts and times the operations performed on one Building, and reads gauges of its current state.
+ * A histogram is only created for an operation the first time it is recorded, so idle buildings and unused
+ * operations cost almost nothing. Metrics can be published to the platform MBean server to be read over JMX.
+ */
+public class BuildingMetrics implements BuildingMetricsMXBean {
+
+    /**
+     * The operations that are counted and timed.
+     */
+    public enum Op {
+        ENTER,
+        EXIT,
+        GO_TO_FLOOR,
+        SELL_COFFEE,
+        CHECK_OUT,
+        RETURN_BOOK,
+        MOVE_IN,
+        MOVE_OUT
+    }
+
+    private static final Op[] OPS = Op.values();
+
+    private final Building building;
+    private final Consumer<Map<String, Long>> gauges;
+    private final AtomicReferenceArray<LatencyHistogram> histograms = new AtomicReferenceArray<>(OPS.length);
+    private ObjectName objectName; // Set while registered with the MBean server
+
+    /**
+     * Constructs metrics for a building.
+     *
+     * @param building the building being measured
+     * @param gauges   fills in the building's current gauge readings when asked
+     */
+    BuildingMetrics(Building building, Consumer<Map<String, Long>> gauges) {
+        this.building = building;
+        this.gauges = gauges;
+    }
+
+    /**
+     * Records one completed operation.
+     *
+     * @param op         the operation
+     * @param startNanos the System.nanoTime() reading taken when the operation started
+     */
+    public void record(Op op, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        LatencyHistogram histogram = this.histograms.get(op.ordinal());
+        if (histogram == null) {
+            this.histograms.compareAndSet(op.ordinal(), null, new LatencyHistogram());
+            histogram = this.histograms.get(op.ordinal());
+        }
+        histogram.record(elapsed);
+    }
+
+    /**
+     * Gets the latency histogram for an operation.
+     *
+     * @param op the operation
+     * @return the histogram, or null if the operation has never been recorded
+     */
+    public LatencyHistogram histogram(Op op) {
+        return this.histograms.get(op.ordinal());
+    }
+
+    /**
+     * Publishes these metrics to the platform MBean server under CSC120:type=&lt;class&gt;,name=&lt;building name&gt;.
+     *
+     * @throws RuntimeException if the metrics cannot be registered, e.g. another building with the same name already is
+     */
+    public synchronized void register() {
+        if (this.objectName != null) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName("CSC120:type=" + this.building.getClass().getSimpleName()
+                                             + ",name=" + ObjectName.quote(String.valueOf(this.building.getName())));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            this.objectName = name;
+        } catch (JMException e) {
+            throw new RuntimeException("Could not register metrics for " + this.building.getName() + ".", e);
+        }
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server, if they were published.
+     */
+    public synchronized void unregister() {
+        if (this.objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+        } catch (JMException e) {
+            throw new RuntimeException("Could not unregister metrics for " + this.building.getName() + ".", e);
+        } finally {
+            this.objectName = null;
+        }
+    }
+
+    @Override
+    public String getBuilding() {
+        return this.building.getName();
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        return perOp(LatencyHistogram::count);
+    }
+
+    @Override
+    public Map<String, Double> getMeanLatencyMicros() {
+        Map<String, Double> out = new LinkedHashMap<>();
+        for (Op op : OPS) {
+            LatencyHistogram histogram = this.histograms.get(op.ordinal());
+            if (histogram != null) {
+                out.put(op.name(), histogram.mean() / 1000.0);
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public Map<String, Long> getP50LatencyNanos() {
+        return perOp(histogram -> histogram.percentile(50));
+    }
+
+    @Override
+    public Map<String, Long> getP99LatencyNanos() {
+        return perOp(histogram -> histogram.percentile(99));
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        this.gauges.accept(out);
+        return out;
+    }
+
+    @Override
+    public void reset() {
+        for (Op op : OPS) {
+            LatencyHistogram histogram = this.histograms.get(op.ordinal());
+            if (histogram != null) {
+                histogram.reset();
+            }
+        }
+    }
+
+    private Map<String, Long> perOp(ToLongFunction<LatencyHistogram> reading) {
+        Map<String, Long> out = new LinkedHashMap<>();
+        for (Op op : OPS) {
+            LatencyHistogram histogram = this.histograms.get(op.ordinal());
+            if (histogram != null) {
+                out.put(op.name(), reading.applyAsLong(histogram));
+            }
+        }
+        return out;
+    }
+}
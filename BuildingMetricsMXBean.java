@@ -0,0 +1,22 @@
+import java.util.Map;
+
+/**
+ * The JMX view of a Building's metrics: how many times each operation completed, how long it took,
+ * and gauges of the building's current state. Maps are keyed by operation or gauge name.
+ */
+public interface BuildingMetricsMXBean {
+
+    String getBuilding();
+
+    Map<String, Long> getCounts();
+
+    Map<String, Double> getMeanLatencyMicros();
+
+    Map<String, Long> getP50LatencyNanos();
+
+    Map<String, Long> getP99LatencyNanos();
+
+    Map<String, Long> getGauges();
+
+    void reset();
+}
@@ -0,0 +1,56 @@
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+
+/**
+ * A BuildingSet holds the buildings of one type on a CampusMap, packed into an array so they can be summed in parallel.
+ * Removing a building moves the last one into its place, so adding and removing both take constant time.
+ */
+class BuildingSet<T extends Building> {
+
+    private static final int PARALLEL_THRESHOLD = 4096; // Below this, splitting the work costs more than it saves
+
+    private Building[] items = new Building[16];
+    private final IdentityHashMap<Building, Integer> positions = new IdentityHashMap<>();
+    private int size;
+
+    void add(T b) {
+        if (this.size == this.items.length) {
+            this.items = Arrays.copyOf(this.items, this.size * 2);
+        }
+        this.positions.put(b, this.size);
+        this.items[this.size++] = b;
+    }
+
+    boolean remove(Building b) {
+        Integer position = this.positions.remove(b);
+        if (position == null) {
+            return false;
+        }
+        Building last = this.items[--this.size];
+        this.items[this.size] = null;
+        if (last != b) {
+            this.items[position] = last;
+            this.positions.put(last, position);
+        }
+        return true;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Adds up a value over every building in the set, splitting large sets across the fork/join pool.
+     */
+    @SuppressWarnings("unchecked")
+    long sum(ToLongFunction<? super T> value) {
+        Building[] items = this.items;
+        IntStream range = IntStream.range(0, this.size);
+        if (this.size >= PARALLEL_THRESHOLD) {
+            range = range.parallel();
+        }
+        return range.mapToLong(i -> value.applyAsLong((T) items[i])).sum();
+    }
+}
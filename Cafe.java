@@ -1,13 +1,21 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 /**
  * A Cafe manages an inventory of coffee, sugar packets, cream, and cups.
  * It allows selling coffee, checking inventory levels, and restocking when supplies are low.
+ * A busy cafe can sell from several registers, each drawing on its own share of the stock, so sales scale with registers.
  */
 
  public class Cafe extends Building {
-    private int nCoffeeOunces; // The number of ounces of coffee remaining in inventory
-    private int nSugarPackets; // The number of sugar packets remaining in inventory
-    private int nCreams; // The number of "splashes" of cream remaining in inventory
-    private int nCups; // The number of cups remaining in inventory
+    private final Inventory inventory; // Ounces of coffee, sugar packets, "splashes" of cream, and cups remaining
+    private final InventoryShards registers; // Each register's own share of the inventory, or null if there is only one register
+    private volatile Journal journal; // Records every inventory change when attached, or null
+    private volatile Restocker restocker; // Restocks in the background when attached, or null
 
     
     /**
@@ -24,12 +32,34 @@
      */
 
     public Cafe(String name, String address, int nFloors, int coffee, int sugar, int creams, int cups) {
+        this(name, address, nFloors, coffee, sugar, creams, cups, 1);
+    }
+
+    /**
+     * Constructs a new Cafe that sells from several registers.
+     * Each thread selling coffee always uses the same register, and each register sells from its own share of the stock,
+     * only going back to the cafe's central stock when its share runs short. Sales at different registers therefore
+     * almost never touch the same memory, while the inventory levels and hasInventory still report the cafe's total stock.
+     * A cafe with more than one register cannot be journaled.
+     *
+     * @param name       the name of the cafe
+     * @param address    the address of the cafe
+     * @param nFloors    the number of floors in the cafe
+     * @param coffee     initial ounces of coffee in inventory
+     * @param sugar      initial number of sugar packets in inventory
+     * @param creams     initial number of cream portions in inventory
+     * @param cups       initial number of cups in inventory
+     * @param nRegisters the number of registers, usually about the number of threads selling at once
+     * @throws RuntimeException if there is not at least one register
+     */
+    public Cafe(String name, String address, int nFloors, int coffee, int sugar, int creams, int cups, int nRegisters) {
         super(name, address, nFloors);
-        this.nCoffeeOunces = coffee;
-        this.nSugarPackets = sugar;
-        this.nCreams = creams;
-        this.nCups = cups;
-        System.out.println("You have built a cafe!");
+        if (nRegisters < 1) {
+            throw new RuntimeException("A cafe needs at least one register.");
+        }
+        this.inventory = new Inventory(coffee, sugar, creams, cups);
+        this.registers = nRegisters > 1 ? new InventoryShards(this.inventory, nRegisters) : null;
+        publish(BuildingEvent.Type.BUILT, "cafe", 0);
     }
 
     // Overloaded Constructor with default sugar and cream
@@ -37,6 +67,94 @@
         this(name, address, nFloors, coffee, 50, 50, cups); // Default 50 sugar and 50 cream
     }
 
+    /**
+     * Rebuilds a cafe after a restart by replaying its journal on top of the journal's latest checkpoint,
+     * then keeps journaling to the same file.
+     * If the journal has no checkpoint yet, the given starting inventory is used as the base.
+     *
+     * @param name    the name of the cafe
+     * @param address the address of the cafe
+     * @param nFloors the number of floors in the cafe
+     * @param coffee  starting ounces of coffee, if the journal has no checkpoint
+     * @param sugar   starting sugar packets, if the journal has no checkpoint
+     * @param creams  starting cream portions, if the journal has no checkpoint
+     * @param cups    starting cups, if the journal has no checkpoint
+     * @param journal the journal file
+     * @return the recovered cafe, with the journal attached
+     * @throws IOException if the journal cannot be read or written
+     */
+    public static Cafe recover(String name, String address, int nFloors, int coffee, int sugar, int creams, int cups,
+                               Path journal) throws IOException {
+        Cafe cafe = new Cafe(name, address, nFloors, coffee, sugar, creams, cups);
+
+        // Find the latest checkpoint, then apply every change it does not already include
+        Inventory.Levels[] base = { cafe.inventory.levels() };
+        Journal.replay(journal, record -> {
+            if (record.getOp() == Journal.Op.CHECKPOINT && record.getVersion() >= base[0].version) {
+                base[0] = new Inventory.Levels(record.getCoffee(), record.getSugar(), record.getCreams(),
+                                               record.getCups(), record.getVersion());
+            }
+        });
+        cafe.inventory.reset(base[0]);
+        Journal.replay(journal, record -> {
+            if (record.getVersion() <= base[0].version) {
+                return;
+            }
+            if (record.getOp() == Journal.Op.SELL) {
+                cafe.inventory.adjust(-record.getCoffee(), -record.getSugar(), -record.getCreams(), -record.getCups(),
+                                      record.getVersion());
+            } else if (record.getOp() == Journal.Op.RESTOCK) {
+                cafe.inventory.adjust(record.getCoffee(), record.getSugar(), record.getCreams(), record.getCups(),
+                                      record.getVersion());
+            }
+        });
+
+        cafe.attachJournal(new Journal(journal, false));
+        return cafe;
+    }
+
+    /**
+     * Starts recording every inventory change in a journal, beginning with a checkpoint of the current inventory.
+     *
+     * @param journal the journal to write to
+     * @throws IOException if the checkpoint cannot be written
+     * @throws RuntimeException if the cafe has more than one register, since its sales are not ordered by a single version
+     */
+    public void attachJournal(Journal journal) throws IOException {
+        if (this.registers != null) {
+            throw new RuntimeException(this.name + " sells from several registers, so it cannot be journaled.");
+        }
+        this.journal = journal;
+        checkpoint();
+    }
+
+    /**
+     * Writes the current inventory to the journal as a checkpoint and drops the changes it makes unnecessary,
+     * so the journal does not grow without bound. Sales can carry on while this runs.
+     *
+     * @throws IOException if the journal cannot be rewritten
+     * @throws RuntimeException if no journal is attached
+     */
+    public void checkpoint() throws IOException {
+        Journal j = this.journal;
+        if (j == null) {
+            throw new RuntimeException("No journal is attached to " + this.name + ".");
+        }
+        Inventory.Levels levels = this.inventory.levels();
+        j.append(Journal.Op.CHECKPOINT, levels.version, null, levels.coffee, levels.sugar, levels.creams, levels.cups);
+        long position = j.sync();
+        // Changes appended before the checkpoint are only still needed if the checkpoint missed them
+        j.compact(position, record -> record.getVersion() > levels.version
+                  || (record.getOp() == Journal.Op.CHECKPOINT && record.getVersion() == levels.version));
+    }
+
+    private void journal(Journal.Op op, long version, int coffee, int sugar, int creams, int cups) {
+        Journal j = this.journal;
+        if (j != null) {
+            j.append(op, version, null, coffee, sugar, creams, cups);
+        }
+    }
+
    /**
     * Displays available options for actions that can be performed in the cafe.
     */
@@ -49,7 +167,9 @@
 
     /**
      * Sells a coffee with specified size, sugar packets, and cream portions.
-     * If inventory is insufficient, it triggers restocking of required items.
+     * If inventory is insufficient, it triggers restocking of required items,
+     * or, if a Restocker is attached, waits for the Restocker's next delivery.
+     * All four resources are reserved together in one atomic step, so concurrent sales never oversell.
      *
      * @param size         the number of ounces of coffee for the sale
      * @param nSugarPackets the number of sugar packets requested
@@ -57,17 +177,38 @@
      * @throws RuntimeException if inventory is insufficient and cannot be restocked
      */
     public void sellCoffee(int size, int nSugarPackets, int nCreams) {
-        // Check if there is enough inventory. If not, restock.
-        if (!hasInventory(size, nSugarPackets, nCreams)) {
-            restock(size, nSugarPackets, nCreams, 1);
+        long start = System.nanoTime();
+        // Reserve the inventory. If there is not enough, restock and try again.
+        long version;
+        while ((version = reserve(size, nSugarPackets, nCreams, 1)) < 0) {
+            awaitRestock(size, nSugarPackets, nCreams, 1);
         }
+        sold(start, version, size, nSugarPackets, nCreams);
+    }
 
-        // Decrease the inventory
-        this.nCoffeeOunces -= size;
-        this.nSugarPackets -= nSugarPackets;
-        this.nCreams -= nCreams;
-        this.nCups -= 1;
-        System.out.println("Coffee sold!");
+    /**
+     * Sells a coffee only if the cafe has everything for it on hand, reporting a shortage instead of restocking or waiting.
+     *
+     * @param size          the number of ounces of coffee for the sale
+     * @param nSugarPackets the number of sugar packets requested
+     * @param nCreams       the number of cream portions requested
+     * @return OK, or OUT_OF_STOCK if any resource is short (nothing is taken)
+     */
+    public Status trySellCoffee(int size, int nSugarPackets, int nCreams) {
+        long start = System.nanoTime();
+        long version = reserve(size, nSugarPackets, nCreams, 1);
+        if (version < 0) {
+            return Status.OUT_OF_STOCK;
+        }
+        sold(start, version, size, nSugarPackets, nCreams);
+        return Status.OK;
+    }
+
+    private void sold(long start, long version, int size, int nSugarPackets, int nCreams) {
+        sold();
+        journal(Journal.Op.SELL, version, size, nSugarPackets, nCreams, 1);
+        publish(BuildingEvent.Type.COFFEE_SOLD, null, size);
+        metrics().record(BuildingMetrics.Op.SELL_COFFEE, start);
     }
 
     // Overloaded sellCoffee method with default sugar and cream
@@ -75,6 +216,65 @@
         this.sellCoffee(size, 1, 1); // Default 1 sugar packet, 1 cream
         }
     
+    /**
+     * Sells a batch of coffees at once. The batch's total demand is reserved from inventory in one step,
+     * and the cafe restocks at most once for the whole batch. If another sale takes the restocked inventory
+     * first, the orders are filled one at a time from what is left and the rest are reported as unsold.
+     *
+     * @param orders the coffees to sell
+     * @return a summary of which orders were sold and what they used
+     * @throws ArithmeticException if the batch's total demand does not fit in an int
+     */
+    public BatchSale sellCoffee(List<CoffeeOrder> orders) {
+        long start = System.nanoTime();
+        int n = orders.size();
+        int coffee = 0;
+        int sugar = 0;
+        int creams = 0;
+        for (CoffeeOrder order : orders) {
+            coffee = Math.addExact(coffee, order.getSize());
+            sugar = Math.addExact(sugar, order.getSugarPackets());
+            creams = Math.addExact(creams, order.getCreams());
+        }
+
+        boolean restocked = false;
+        long version = reserve(coffee, sugar, creams, n);
+        if (version < 0) {
+            restocked = awaitRestock(coffee, sugar, creams, n);
+            version = reserve(coffee, sugar, creams, n);
+        }
+
+        boolean[] sold = new boolean[n];
+        if (version < 0) {
+            // Lost the restocked inventory to a concurrent sale; fill what we can order by order
+            int nSold = 0;
+            coffee = sugar = creams = 0;
+            for (int i = 0; i < n; i++) {
+                CoffeeOrder order = orders.get(i);
+                long orderVersion = reserve(order.getSize(), order.getSugarPackets(), order.getCreams(), 1);
+                if (orderVersion >= 0) {
+                    journal(Journal.Op.SELL, orderVersion, order.getSize(), order.getSugarPackets(), order.getCreams(), 1);
+                    sold[i] = true;
+                    nSold++;
+                    coffee += order.getSize();
+                    sugar += order.getSugarPackets();
+                    creams += order.getCreams();
+                }
+            }
+            sold();
+            publish(BuildingEvent.Type.BATCH_SOLD, null, nSold);
+            metrics().record(BuildingMetrics.Op.SELL_COFFEE, start);
+            return new BatchSale(sold, nSold, coffee, sugar, creams, restocked);
+        }
+
+        Arrays.fill(sold, true);
+        sold();
+        journal(Journal.Op.SELL, version, coffee, sugar, creams, n);
+        publish(BuildingEvent.Type.BATCH_SOLD, null, n);
+        metrics().record(BuildingMetrics.Op.SELL_COFFEE, start);
+        return new BatchSale(sold, n, coffee, sugar, creams, restocked);
+    }
+
     /**
      * Checks if there is enough inventory to fulfill a coffee order.
      *
@@ -84,38 +284,141 @@
      * @return true if there is sufficient inventory for the order, false otherwise
      */
     public boolean hasInventory(int size, int nSugarPackets, int nCreams) {
-        return this.nCoffeeOunces >= size &&
-               this.nSugarPackets >= nSugarPackets &&
-               this.nCreams >= nCreams &&
-               this.nCups >= 1;
+        return inventoryLevels().covers(size, nSugarPackets, nCreams, 1);
+    }
+
+    // Reserves stock for a sale and returns the version it produced, or -1 if the cafe is short.
+    // Sales at a cafe with several registers are not versioned and return 0.
+    private long reserve(int coffee, int sugar, int creams, int cups) {
+        if (this.registers == null) {
+            return this.inventory.reserve(coffee, sugar, creams, cups);
+        }
+        int result = this.registers.reserve(coffee, sugar, creams, cups);
+        if (result == InventoryShards.BORROWED) {
+            Restocker r = this.restocker;
+            if (r != null) {
+                r.sold(this.registers.levels()); // Only the central stock changed, so this is when the totals are worth checking
+            }
+        }
+        return result == InventoryShards.SHORT ? -1 : 0;
+    }
+
+    // Makes up a shortage: a sale restocks inline unless a Restocker is attached, in which case it waits for the Restocker.
+    // Returns whether any stock was actually delivered while making it up.
+    private boolean awaitRestock(int coffee, int sugar, int creams, int cups) {
+        Restocker r = this.restocker;
+        if (r == null) {
+            return restock(coffee, sugar, creams, cups);
+        }
+        return r.awaitStock(coffee, sugar, creams, cups);
+    }
+
+    // Lets an attached Restocker know a sale happened, in case it left anything running low
+    private void sold() {
+        Restocker r = this.restocker;
+        if (r != null && this.registers == null) {
+            r.sold(this.inventory.levels());
+        }
+    }
+
+    synchronized void attachRestocker(Restocker restocker) {
+        if (this.restocker != null) {
+            throw new RuntimeException(this.name + " already has a restocker.");
+        }
+        this.restocker = restocker;
+    }
+
+    synchronized void detachRestocker(Restocker restocker) {
+        if (this.restocker == restocker) {
+            this.restocker = null;
+        }
+    }
+
+    // The cafe's whole stock, including every register's share
+    Inventory.Levels inventoryLevels() {
+        return this.registers == null ? this.inventory.levels() : this.registers.levels();
+    }
+
+    /**
+     * Delivers stock to the cafe, as a Restocker does.
+     *
+     * @return the inventory as it was just before the delivery
+     */
+    Inventory.Levels replenish(int nCoffeeOunces, int nSugarPackets, int nCreams, int nCups) {
+        Inventory.Levels before = this.inventory.add(nCoffeeOunces, nSugarPackets, nCreams, nCups);
+        journal(Journal.Op.RESTOCK, before.version + 1, nCoffeeOunces, nSugarPackets, nCreams, nCups);
+        if (nCoffeeOunces > 0) {
+            publish(BuildingEvent.Type.RESTOCKED, "Coffee", nCoffeeOunces);
+        }
+        if (nSugarPackets > 0) {
+            publish(BuildingEvent.Type.RESTOCKED, "Sugar", nSugarPackets);
+        }
+        if (nCups > 0) {
+            publish(BuildingEvent.Type.RESTOCKED, "Cups", nCups);
+        }
+        if (nCreams > 0) {
+            publish(BuildingEvent.Type.RESTOCKED, "Creams", nCreams);
+        }
+        return before;
     }
 
     /**
      * Restocks the cafe's inventory with additional coffee, sugar packets, cream, and cups
-     * if the current inventory for specific items is below the specified levels. 
+     * if the current inventory for specific items is below the specified levels.
+     * At a cafe with several registers, the levels are the whole cafe's, including every register's share.
      *
      * @param nCoffeeOunces the additional ounces of coffee to restock
      * @param nSugarPackets the additional sugar packets to restock
      * @param nCreams       the additional cream portions to restock
      * @param nCups         the additional cups to restock
+     * @return true if any resource was low enough to be restocked
      */
-    private void restock(int nCoffeeOunces, int nSugarPackets, int nCreams, int nCups) {
-        if (this.nCoffeeOunces < nCoffeeOunces) {
-            this.nCoffeeOunces += nCoffeeOunces;
-            System.out.println("Coffee restocked!");
+    private boolean restock(int nCoffeeOunces, int nSugarPackets, int nCreams, int nCups) {
+        Inventory.Levels before = this.registers == null ? this.inventory.restock(nCoffeeOunces, nSugarPackets, nCreams, nCups)
+                                                         : this.registers.restock(nCoffeeOunces, nSugarPackets, nCreams, nCups);
+        journal(Journal.Op.RESTOCK, before.version + 1,
+                before.coffee < nCoffeeOunces ? nCoffeeOunces : 0, before.sugar < nSugarPackets ? nSugarPackets : 0,
+                before.creams < nCreams ? nCreams : 0, before.cups < nCups ? nCups : 0);
+        if (before.coffee < nCoffeeOunces) {
+            publish(BuildingEvent.Type.RESTOCKED, "Coffee", nCoffeeOunces);
         }
-        if (this.nSugarPackets < nSugarPackets) {
-            this.nSugarPackets += nSugarPackets;
-            System.out.println("Sugar restocked!");
+        if (before.sugar < nSugarPackets) {
+            publish(BuildingEvent.Type.RESTOCKED, "Sugar", nSugarPackets);
         }
-        if (this.nCups < nCups) {
-            this.nCups += nCups;
-            System.out.println("Cups restocked!");
+        if (before.cups < nCups) {
+            publish(BuildingEvent.Type.RESTOCKED, "Cups", nCups);
         }
-        if (this.nCreams < nCreams) {
-            this.nCreams += nCreams;
-            System.out.println("Creams restocked!");
+        if (before.creams < nCreams) {
+            publish(BuildingEvent.Type.RESTOCKED, "Creams", nCreams);
         }
+        return before.coffee < nCoffeeOunces || before.sugar < nSugarPackets || before.creams < nCreams || before.cups < nCups;
+    }
+
+    /* Accessors */
+    public int getCoffeeOunces() {
+        return inventoryLevels().coffee;
+    }
+
+    public int getSugarPackets() {
+        return inventoryLevels().sugar;
+    }
+
+    public int getCreams() {
+        return inventoryLevels().creams;
+    }
+
+    public int getCups() {
+        return inventoryLevels().cups;
+    }
+
+    @Override
+    protected void gauges(Map<String, Long> gauges) {
+        super.gauges(gauges);
+        Inventory.Levels levels = inventoryLevels();
+        gauges.put("coffeeOunces", (long) levels.coffee);
+        gauges.put("sugarPackets", (long) levels.sugar);
+        gauges.put("creams", (long) levels.creams);
+        gauges.put("cups", (long) levels.cups);
     }
 
     // Overloaded restock method using default values
@@ -145,9 +448,37 @@
         CC.sellCoffee(12);
         CC.restock();
 
+        // Sell a batch of orders at once
+        List<CoffeeOrder> rush = new ArrayList<>();
+        rush.add(new CoffeeOrder(8));
+        rush.add(new CoffeeOrder(12, 0, 1));
+        rush.add(new CoffeeOrder(16, 2, 0));
+        System.out.println(CC.sellCoffee(rush));
+
+        // A busy cafe with four registers, each selling on its own thread from its own share of the stock
+        Cafe busy = new Cafe("Compass Cafe", "7 Neilson Drive", 1, 400, 40, 40, 40, 4);
+        Thread[] registers = new Thread[4];
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = new Thread(() -> {
+                for (int sale = 0; sale < 5; sale++) {
+                    busy.sellCoffee(16, 1, 1);
+                }
+            });
+            registers[i].start();
+        }
+        for (Thread register : registers) {
+            try {
+                register.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        System.out.println(busy.getCoffeeOunces() + " oz of coffee and " + busy.getCups() + " cups left after 20 sales.");
+
         // Exit the cafe
         CC.exit();
 
 
+
     }
 }
\ No newline at end of file
@@ -1,48 +1,385 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
 
 public class CampusMap {
 
-    ArrayList<Building> buildings;
+    BuildingDirectory buildings; // The buildings in directory order, with lookups by name and address
+    CampusRoutes routes; // Walkways between the buildings, or null until routes() is first called
+    StringBuilder directory; // The rendered directory, kept up to date as buildings are added, or null until next needed
+    String directoryString; // The last directory toString() returned, or null if it has changed since
+    BuildingSet<House> houses = new BuildingSet<House>(); // The buildings of each type, for campus-wide totals
+    BuildingSet<Library> libraries = new BuildingSet<Library>();
+    BuildingSet<Cafe> cafes = new BuildingSet<Cafe>();
+    EventPublisher events; // Activity in every building on the map, or null until events() is first called
 
-    /* Default constructor, initializes empty ArrayList */
+    /* Default constructor, initializes empty directory and indexes */
     public CampusMap() {
-        buildings = new ArrayList<Building>();
+        this(false);
     }
 
     /**
-     * Adds a Building to the map
+     * Constructs an empty map, optionally in compact mode for very large maps.
+     * In compact mode, plain Buildings are stored as columns of numbers with each distinct name and address stored once,
+     * which takes several times less memory. Lookups then return a new Building object each time, equal in name, address,
+     * and floors, and two plain Buildings with the same name, address, and floors count as the same building.
+     * Subclasses such as Cafe, House, and Library are always kept as the objects that were added.
+     * @param compact whether to store plain Buildings compactly
+     */
+    public CampusMap(boolean compact) {
+        buildings = compact ? new CompactDirectory() : new IndexedDirectory();
+    }
+
+    /**
+     * Adds a Building to the map. A Building added more than once is listed in the directory once for each time,
+     * but counted once in campus-wide totals, routes, and events.
      * @param b the Building to add
      */
     public void addBuilding(Building b) {
-        System.out.println("Adding building...");
-        buildings.add(b);
-        System.out.println("-->Successfully added " + b.getName() + " to the map.");
+        if (buildings.add(b)) {
+            if (b instanceof House) {
+                houses.add((House) b);
+            } else if (b instanceof Library) {
+                libraries.add((Library) b);
+            } else if (b instanceof Cafe) {
+                cafes.add((Cafe) b);
+            }
+            if (routes != null) {
+                routes.addBuilding(b);
+            }
+            if (events != null) {
+                b.relayTo(events);
+            }
+        }
+        if (directory != null) {
+            appendListing(directory, buildings.size(), b.getName(), b.getAddress());
+            directoryString = null;
+        }
+        publish(BuildingEvent.Type.BUILDING_ADDED, b);
     }
 
     /**
-     * Removes a Building from the map
+     * Removes a Building from the map. A Building added more than once loses its earliest listing, and stays on the map
+     * until every listing is removed.
      * @param b the Building to remove
      * @return the removed Building
      */
     public Building removeBuilding(Building b) {
-        System.out.println("Removing building...");
-        buildings.remove(b);
-        System.out.println("-->Successfully removed " + b.getName() + " to the map.");
+        Building removed = buildings.remove(b);
+        if (removed != null) {
+            if (!buildings.contains(removed)) {
+                houses.remove(removed);
+                libraries.remove(removed);
+                cafes.remove(removed);
+                if (routes != null) {
+                    routes.removeBuilding(removed);
+                }
+                if (events != null) {
+                    removed.stopRelaying(events);
+                }
+            }
+            directory = null; // Every later building is renumbered, so render it again next time
+            directoryString = null;
+        }
+        publish(BuildingEvent.Type.BUILDING_REMOVED, b);
         return b;
     }
 
-    public String toString() {
-        String mapString = "DIRECTORY of BUILDINGS";
+    private void publish(BuildingEvent.Type type, Building b) {
+        EventSink sink = Building.getEventSink();
+        boolean streamed = events != null && events.hasSubscribers();
+        if (sink != EventSink.NONE || streamed) {
+            BuildingEvent event = new BuildingEvent(type, b.getName(), null, buildings.size());
+            if (sink != EventSink.NONE) {
+                sink.publish(event);
+            }
+            if (streamed) {
+                events.publish(event);
+            }
+        }
+    }
+
+    /**
+     * Gets the stream of activity across the map: buildings being added and removed,
+     * and everything that happens in the buildings while they are on the map.
+     * Each subscriber receives events at its own pace; one that falls too far behind misses events rather than slowing the buildings down.
+     * A compact map keeps a Building object for every building from then on, so use the objects its lookups return.
+     * @return the map's event stream
+     */
+    public EventPublisher events() {
+        if (events == null) {
+            buildings.retainAll(); // Buildings relay to the stream themselves, so every building needs an object that lasts
+            events = new EventPublisher();
+            for (Building b : buildings) {
+                b.relayTo(events);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Finds a Building on the map by name
+     * @param name the name to look up
+     * @return the first Building added with that name, or null if there is none
+     */
+    public Building getBuildingByName(String name) {
+        return buildings.firstByName(name);
+    }
+
+    /**
+     * Finds a Building on the map by address
+     * @param address the address to look up
+     * @return the first Building added at that address, or null if there is none
+     */
+    public Building getBuildingByAddress(String address) {
+        return buildings.firstByAddress(address);
+    }
+
+    /**
+     * Removes a Building from the map by name
+     * @param name the name of the Building to remove
+     * @return the removed Building
+     * @throws RuntimeException if no Building on the map has that name
+     */
+    public Building removeBuildingByName(String name) {
+        Building b = getBuildingByName(name);
+        if (b == null) {
+            throw new RuntimeException("No building named " + name + " on the map.");
+        }
+        return removeBuilding(b);
+    }
 
-        for (int i = 0; i < this.buildings.size(); i ++) {
-            mapString += "\n  " + (i+1) + ". "+ this.buildings.get(i).getName() + " (" + this.buildings.get(i).getAddress() + ")";
+    /**
+     * Removes a Building from the map by address
+     * @param address the address of the Building to remove
+     * @return the removed Building
+     * @throws RuntimeException if no Building on the map has that address
+     */
+    public Building removeBuildingByAddress(String address) {
+        Building b = getBuildingByAddress(address);
+        if (b == null) {
+            throw new RuntimeException("No building at " + address + " on the map.");
         }
-        return mapString;
+        return removeBuilding(b);
+    }
+
+    /**
+     * Gets the walkways between the buildings on the map, for finding routes and travel times.
+     * Buildings added to or removed from the map are added to or removed from the walkway network too.
+     * A compact map keeps a Building object for every building from then on, so use the objects its lookups return.
+     * @return the map's walkway network
+     */
+    public CampusRoutes routes() {
+        if (routes == null) {
+            buildings.retainAll(); // Routes are keyed by object, so every building needs one that lasts
+            routes = new CampusRoutes();
+            for (Building b : buildings) {
+                routes.addBuilding(b);
+            }
+        }
+        return routes;
+    }
+
+    /**
+     * Gets the number of buildings on the map
+     * @return the number of buildings
+     */
+    public int nBuildings() {
+        return buildings.size();
+    }
+
+    /**
+     * Lists every building on the map, in directory order
+     * @return a new list of the buildings
+     */
+    public List<Building> getBuildings() {
+        List<Building> list = new ArrayList<Building>(buildings.size());
+        for (Building b : buildings) {
+            list.add(b);
+        }
+        return list;
+    }
+
+    /**
+     * Adds up the residents of every House on the map
+     * @return the total number of residents
+     */
+    public long totalResidents() {
+        return houses.sum(House::nResidents);
+    }
+
+    /**
+     * Adds up the titles available to check out in every Library on the map
+     * @return the total number of available titles
+     */
+    public long totalAvailableTitles() {
+        return libraries.sum(Library::nAvailable);
+    }
+
+    /**
+     * Adds up the coffee in stock at every Cafe on the map
+     * @return the total ounces of coffee
+     */
+    public long totalCoffeeOunces() {
+        return cafes.sum(Cafe::getCoffeeOunces);
+    }
+
+    /**
+     * Adds up a value over every building of a type on the map, in parallel on the fork/join pool when there are many.
+     * Houses, Libraries, and Cafes are kept in their own indexes, so totals over them never look at other buildings.
+     * Other types are added up by walking the whole directory, counting a building listed more than once only once;
+     * on a compact map that makes a new Building object for every plain building, used once and then discarded.
+     * @param type  the type of building to add up, such as House.class; subclasses are included
+     * @param value the value to add up for each building, which should be cheap to read
+     * @return the total
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Building> long aggregate(Class<T> type, ToLongFunction<? super T> value) {
+        if (type == House.class) {
+            return houses.sum((ToLongFunction<? super House>) value);
+        }
+        if (type == Library.class) {
+            return libraries.sum((ToLongFunction<? super Library>) value);
+        }
+        if (type == Cafe.class) {
+            return cafes.sum((ToLongFunction<? super Cafe>) value);
+        }
+        List<Building> distinct = new ArrayList<Building>(buildings.size());
+        buildings.forEachDistinct(b -> {
+            if (type.isInstance(b)) {
+                distinct.add(b);
+            }
+        });
+        return distinct.parallelStream().mapToLong(b -> value.applyAsLong(type.cast(b))).sum();
+    }
+
+    private static final String DIRECTORY_HEADER = "DIRECTORY of BUILDINGS";
+
+    private static void appendListing(StringBuilder out, int i, String name, String address) {
+        out.append("\n  ").append(i).append(". ").append(name).append(" (").append(address).append(")");
+    }
+
+    /**
+     * Writes the directory of buildings to a character stream, one listing at a time, without building it as one String.
+     * @param out where to write the directory
+     * @throws IOException if writing fails
+     */
+    public void writeDirectory(Appendable out) throws IOException {
+        if (directoryString != null) {
+            out.append(directoryString);
+            return;
+        }
+        out.append(DIRECTORY_HEADER);
+        StringBuilder listing = new StringBuilder();
+        int[] i = {0};
+        IOException[] failure = {null};
+        buildings.forEachListing((name, address) -> {
+            if (failure[0] == null) {
+                listing.setLength(0);
+                appendListing(listing, ++i[0], name, address);
+                try {
+                    out.append(listing);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    /**
+     * Writes the directory of buildings to a channel as UTF-8, through a fixed-size buffer, without building it as one String.
+     * @param channel where to write the directory
+     * @throws IOException if writing fails
+     */
+    public void writeDirectory(WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        writeDirectory(new Appendable() {
+            public Appendable append(CharSequence s) throws IOException {
+                byte[] bytes = s.toString().getBytes(StandardCharsets.UTF_8);
+                for (int off = 0; off < bytes.length; ) {
+                    int n = Math.min(buffer.remaining(), bytes.length - off);
+                    buffer.put(bytes, off, n);
+                    off += n;
+                    if (!buffer.hasRemaining()) {
+                        drain(buffer, channel);
+                    }
+                }
+                return this;
+            }
+
+            public Appendable append(CharSequence s, int start, int end) throws IOException {
+                return append(s.subSequence(start, end));
+            }
+
+            public Appendable append(char c) throws IOException {
+                return append(String.valueOf(c));
+            }
+        });
+        drain(buffer, channel);
+    }
+
+    private static void drain(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Renders the directory of buildings. The rendering is kept and extended as buildings are added,
+     * so printing the directory again costs nothing until a building is removed.
+     */
+    public String toString() {
+        if (directoryString == null) {
+            if (directory == null) {
+                StringBuilder rendered = new StringBuilder(DIRECTORY_HEADER);
+                int[] i = {0};
+                buildings.forEachListing((name, address) -> appendListing(rendered, ++i[0], name, address));
+                directory = rendered;
+            }
+            directoryString = directory.toString();
+        }
+        return directoryString;
     }
 
     public static void main(String[] args) {
         CampusMap myMap = new CampusMap();
 
+        // Count the activity on the map as it happens, off to the side of the buildings themselves
+        Map<BuildingEvent.Type, LongAdder> activity = new ConcurrentHashMap<>();
+        CountDownLatch activityDone = new CountDownLatch(1);
+        myMap.events().subscribe(new Flow.Subscriber<BuildingEvent>() {
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            public void onNext(BuildingEvent event) {
+                activity.computeIfAbsent(event.getType(), t -> new LongAdder()).increment();
+            }
+
+            public void onError(Throwable failure) {
+                activityDone.countDown();
+            }
+
+            public void onComplete() {
+                activityDone.countDown();
+            }
+        });
+
         // Add different buildings to the map, demonstrating overloaded constructors and methods
 
         // Using overloaded constructor in House (without elevator)
@@ -83,6 +420,42 @@ public class CampusMap {
         Cafe campusCafe = new Cafe("Campus Cafe", "5 Chapin Way", 1, 100, 50);
         campusCafe.sellCoffee(12); // Using overloaded sellCoffee method with default sugar and cream
 
+        // Look up and remove buildings by name and address
+        System.out.println(myMap.getBuildingByAddress("4 Tyler Court"));
+        myMap.removeBuildingByName("Burton Hall");
+
+        // Connect buildings with walkways and find the shortest route between two of them
+        CampusRoutes routes = myMap.routes();
+        Building ford = myMap.getBuildingByName("Ford Hall");
+        Building bass = myMap.getBuildingByName("Bass Hall");
+        Building seelye = myMap.getBuildingByName("Seelye Hall");
+        Building young = myMap.getBuildingByName("Young Science Library");
+        routes.addWalkway(ford, bass, 120);
+        routes.addWalkway(bass, young, 90);
+        routes.addWalkway(ford, seelye, 150);
+        routes.addWalkway(seelye, young, 200);
+        System.out.println("Ford Hall to Young Science Library: " + routes.distance(ford, young) + " m, "
+                           + Math.round(routes.travelTime(ford, young)) + " s on foot");
+        for (Building b : routes.route(ford, young)) {
+            System.out.println("  " + b.getName());
+        }
+
+        // Campus-wide totals
+        System.out.println(myMap.totalCoffeeOunces() + " oz of coffee in stock across campus.");
+        System.out.println(myMap.aggregate(Building.class, Building::getFloors) + " floors across campus.");
+
+        // Move residents into a house on the map, then see what happened across campus
+        House albright = (House) myMap.getBuildingByName("Albright House");
+        albright.moveIn("Carol");
+        albright.moveIn("Dana");
+        myMap.events().close();
+        try {
+            activityDone.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Activity on the map: " + new TreeMap<>(activity));
+
         // Print the Campus Map
         System.out.println(myMap);
     }
@@ -0,0 +1,428 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CampusRoutes is the network of walkways between the buildings on a CampusMap.
+ * It answers shortest-route, walking-distance, and travel-time questions between buildings.
+ * The shortest-path tree from each building asked about is kept in a cache, so repeat queries from the same building
+ * (or, since walkways go both ways, to it) are a simple lookup.
+ * Changes keep the cache up to date instead of clearing it:
+ * a new building or a shorter walkway only shrinks distances, so cached trees are patched from the changed spot outward,
+ * and a removed building or walkway only drops the trees that actually routed through it.
+ */
+public class CampusRoutes {
+
+    private static final double WALKING_SPEED = 1.4; // Meters per second
+    private static final int DEFAULT_CACHED_TREES = 256;
+
+    private final HashMap<Building, Integer> ids = new HashMap<>(); // Each building's slot in the arrays below
+    private Building[] nodes = new Building[16];
+    private Walkways[] walkways = new Walkways[16];
+    private int[] freeIds = new int[16]; // Slots left by removed buildings, reused before new ones
+    private int nFree;
+    private int nIds; // Slots handed out so far
+    private final LinkedHashMap<Integer, Tree> trees; // Shortest-path trees by source, least recently used first
+    private final Heap heap = new Heap();
+
+    /**
+     * The walkways leaving one building.
+     */
+    private static final class Walkways {
+        int[] to = new int[4];
+        double[] meters = new double[4];
+        int size;
+
+        int find(int target) {
+            for (int i = 0; i < this.size; i++) {
+                if (this.to[i] == target) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void put(int target, double length) {
+            int i = find(target);
+            if (i < 0) {
+                if (this.size == this.to.length) {
+                    this.to = Arrays.copyOf(this.to, this.size * 2);
+                    this.meters = Arrays.copyOf(this.meters, this.size * 2);
+                }
+                i = this.size++;
+                this.to[i] = target;
+            }
+            this.meters[i] = length;
+        }
+
+        void remove(int target) {
+            int i = find(target);
+            if (i >= 0) {
+                this.size--;
+                this.to[i] = this.to[this.size];
+                this.meters[i] = this.meters[this.size];
+            }
+        }
+    }
+
+    /**
+     * The shortest distance from one source to every building, and the previous building on each route.
+     */
+    private static final class Tree {
+        double[] distance;
+        int[] previous;
+
+        Tree(int n) {
+            this.distance = new double[n];
+            this.previous = new int[n];
+            Arrays.fill(this.distance, Double.POSITIVE_INFINITY);
+            Arrays.fill(this.previous, -1);
+        }
+
+        double distance(int id) {
+            return id < this.distance.length ? this.distance[id] : Double.POSITIVE_INFINITY;
+        }
+
+        void set(int id, double d, int previous) {
+            if (id >= this.distance.length) {
+                int n = Math.max(id + 1, this.distance.length * 2);
+                int old = this.distance.length;
+                this.distance = Arrays.copyOf(this.distance, n);
+                this.previous = Arrays.copyOf(this.previous, n);
+                Arrays.fill(this.distance, old, n, Double.POSITIVE_INFINITY);
+                Arrays.fill(this.previous, old, n, -1);
+            }
+            this.distance[id] = d;
+            this.previous[id] = previous;
+        }
+
+        boolean routesThrough(int id) {
+            for (int p : this.previous) {
+                if (p == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A binary min-heap of (distance, building) pairs for Dijkstra's algorithm. Stale entries are skipped when popped.
+     */
+    private static final class Heap {
+        double[] keys = new double[64];
+        int[] values = new int[64];
+        int size;
+
+        void push(double key, int value) {
+            if (this.size == this.keys.length) {
+                this.keys = Arrays.copyOf(this.keys, this.size * 2);
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            int i = this.size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (this.keys[parent] <= key) {
+                    break;
+                }
+                this.keys[i] = this.keys[parent];
+                this.values[i] = this.values[parent];
+                i = parent;
+            }
+            this.keys[i] = key;
+            this.values[i] = value;
+        }
+
+        // Removes the smallest entry; read its key and value from keys[size] and values[size] afterwards
+        void pop() {
+            double topKey = this.keys[0];
+            int topValue = this.values[0];
+            double key = this.keys[--this.size];
+            int value = this.values[this.size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= this.size) {
+                    break;
+                }
+                if (child + 1 < this.size && this.keys[child + 1] < this.keys[child]) {
+                    child++;
+                }
+                if (key <= this.keys[child]) {
+                    break;
+                }
+                this.keys[i] = this.keys[child];
+                this.values[i] = this.values[child];
+                i = child;
+            }
+            this.keys[i] = key;
+            this.values[i] = value;
+            this.keys[this.size] = topKey;
+            this.values[this.size] = topValue;
+        }
+    }
+
+    /* Default constructor, caches the shortest-path trees of up to 256 buildings */
+    public CampusRoutes() {
+        this(DEFAULT_CACHED_TREES);
+    }
+
+    /**
+     * Constructs an empty walkway network.
+     *
+     * @param cachedTrees how many buildings' shortest-path trees to keep; each takes about 12 bytes per building on the map
+     */
+    public CampusRoutes(int cachedTrees) {
+        if (cachedTrees < 1) {
+            throw new RuntimeException("Must cache at least 1 shortest-path tree.");
+        }
+        this.trees = new LinkedHashMap<Integer, Tree>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Tree> eldest) {
+                return size() > cachedTrees;
+            }
+        };
+    }
+
+    /**
+     * Adds a building with no walkways yet. Called by CampusMap.addBuilding().
+     * Cached routes stay valid, since nothing can reach the new building until a walkway does.
+     */
+    synchronized void addBuilding(Building b) {
+        if (this.ids.containsKey(b)) {
+            return;
+        }
+        int id;
+        if (this.nFree > 0) {
+            id = this.freeIds[--this.nFree];
+        } else {
+            id = this.nIds++;
+            if (id == this.nodes.length) {
+                this.nodes = Arrays.copyOf(this.nodes, id * 2);
+                this.walkways = Arrays.copyOf(this.walkways, id * 2);
+            }
+        }
+        this.ids.put(b, id);
+        this.nodes[id] = b;
+        this.walkways[id] = new Walkways();
+    }
+
+    /**
+     * Removes a building and every walkway to it. Called by CampusMap.removeBuilding().
+     * Only the cached trees that routed through the building are dropped.
+     */
+    synchronized void removeBuilding(Building b) {
+        Integer removed = this.ids.remove(b);
+        if (removed == null) {
+            return;
+        }
+        int id = removed;
+        Walkways out = this.walkways[id];
+        for (int i = 0; i < out.size; i++) {
+            this.walkways[out.to[i]].remove(id);
+        }
+        this.trees.remove(id);
+        for (Iterator<Tree> it = this.trees.values().iterator(); it.hasNext(); ) {
+            Tree tree = it.next();
+            if (tree.routesThrough(id)) {
+                it.remove();
+            } else if (id < tree.distance.length) {
+                tree.distance[id] = Double.POSITIVE_INFINITY; // A dead end; the slot may be reused by a new building
+                tree.previous[id] = -1;
+            }
+        }
+        this.nodes[id] = null;
+        this.walkways[id] = null;
+        if (this.nFree == this.freeIds.length) {
+            this.freeIds = Arrays.copyOf(this.freeIds, this.nFree * 2);
+        }
+        this.freeIds[this.nFree++] = id;
+    }
+
+    /**
+     * Adds a walkway between two buildings, or changes its length if there already is one. Walkways go both ways.
+     *
+     * @param a      one end of the walkway
+     * @param b      the other end of the walkway
+     * @param meters the length of the walkway
+     * @throws RuntimeException if either building is not on the map or the length is not positive
+     */
+    public synchronized void addWalkway(Building a, Building b, double meters) {
+        if (!(meters > 0) || Double.isInfinite(meters)) {
+            throw new RuntimeException("A walkway must have a positive length.");
+        }
+        int from = id(a);
+        int to = id(b);
+        if (from == to) {
+            throw new RuntimeException("A walkway must connect two different buildings.");
+        }
+        int existing = this.walkways[from].find(to);
+        if (existing >= 0 && this.walkways[from].meters[existing] < meters) {
+            removeWalkway(from, to); // Getting longer can reroute anything that used it, so treat it as a removal first
+        }
+        this.walkways[from].put(to, meters);
+        this.walkways[to].put(from, meters);
+
+        // A new or shorter walkway can only shorten routes: patch each cached tree outward from whichever end improved
+        for (Tree tree : this.trees.values()) {
+            relax(tree, from, to, meters);
+            relax(tree, to, from, meters);
+        }
+    }
+
+    /**
+     * Removes the walkway between two buildings, if there is one.
+     *
+     * @param a one end of the walkway
+     * @param b the other end of the walkway
+     * @throws RuntimeException if either building is not on the map
+     */
+    public synchronized void removeWalkway(Building a, Building b) {
+        removeWalkway(id(a), id(b));
+    }
+
+    private void removeWalkway(int a, int b) {
+        if (this.walkways[a].find(b) < 0) {
+            return;
+        }
+        this.walkways[a].remove(b);
+        this.walkways[b].remove(a);
+        // Only trees that used this walkway can change
+        this.trees.values().removeIf(tree -> (b < tree.previous.length && tree.previous[b] == a)
+                                          || (a < tree.previous.length && tree.previous[a] == b));
+    }
+
+    /**
+     * Gets the length of the shortest walking route between two buildings.
+     *
+     * @param a where the route starts
+     * @param b where the route ends
+     * @return the route's length in meters, or Double.POSITIVE_INFINITY if no walkways connect the two buildings
+     * @throws RuntimeException if either building is not on the map
+     */
+    public synchronized double distance(Building a, Building b) {
+        int from = id(a);
+        int to = id(b);
+        Tree reverse = this.trees.get(to); // Walkways go both ways, so a tree from either end will do
+        if (reverse != null) {
+            return reverse.distance(from);
+        }
+        return tree(from).distance(to);
+    }
+
+    /**
+     * Gets how long it takes to walk the shortest route between two buildings.
+     *
+     * @param a where the route starts
+     * @param b where the route ends
+     * @return the walking time in seconds, or Double.POSITIVE_INFINITY if no walkways connect the two buildings
+     * @throws RuntimeException if either building is not on the map
+     */
+    public double travelTime(Building a, Building b) {
+        return distance(a, b) / WALKING_SPEED;
+    }
+
+    /**
+     * Gets the shortest walking route between two buildings.
+     *
+     * @param a where the route starts
+     * @param b where the route ends
+     * @return every building along the route, starting with a and ending with b
+     * @throws RuntimeException if either building is not on the map, or no walkways connect them
+     */
+    public synchronized List<Building> route(Building a, Building b) {
+        int from = id(a);
+        int to = id(b);
+        ArrayList<Building> route = new ArrayList<>();
+        Tree reverse = this.trees.get(to);
+        if (reverse != null) {
+            // Following the tree from b's side back from a lists the route in the right order already
+            if (reverse.distance(from) == Double.POSITIVE_INFINITY) {
+                throw new RuntimeException("No walkways connect " + a.getName() + " and " + b.getName() + ".");
+            }
+            for (int id = from; id != -1; id = reverse.previous[id]) {
+                route.add(this.nodes[id]);
+            }
+            return route;
+        }
+        Tree tree = tree(from);
+        if (tree.distance(to) == Double.POSITIVE_INFINITY) {
+            throw new RuntimeException("No walkways connect " + a.getName() + " and " + b.getName() + ".");
+        }
+        for (int id = to; id != -1; id = tree.previous[id]) {
+            route.add(this.nodes[id]);
+        }
+        Collections.reverse(route);
+        return route;
+    }
+
+    private int id(Building b) {
+        Integer id = this.ids.get(b);
+        if (id == null) {
+            throw new RuntimeException(b.getName() + " is not on the map.");
+        }
+        return id;
+    }
+
+    private Tree tree(int source) {
+        Tree tree = this.trees.get(source);
+        if (tree == null) {
+            tree = new Tree(this.nIds);
+            tree.set(source, 0, -1);
+            this.heap.push(0, source);
+            spread(tree);
+            this.trees.put(source, tree);
+        }
+        return tree;
+    }
+
+    // If going through `from` is a shorter way to reach `to`, takes it and spreads the improvement
+    private void relax(Tree tree, int from, int to, double meters) {
+        double d = tree.distance(from) + meters;
+        if (d < tree.distance(to)) {
+            tree.set(to, d, from);
+            this.heap.push(d, to);
+            spread(tree);
+        }
+    }
+
+    // Dijkstra's algorithm from whatever is on the heap, only ever lowering distances already in the tree
+    private void spread(Tree tree) {
+        Heap heap = this.heap;
+        while (heap.size > 0) {
+            heap.pop();
+            double d = heap.keys[heap.size];
+            int id = heap.values[heap.size];
+            if (d > tree.distance[id]) {
+                continue; // Already reached by a shorter route
+            }
+            Walkways out = this.walkways[id];
+            for (int i = 0; i < out.size; i++) {
+                int next = out.to[i];
+                double nd = d + out.meters[i];
+                if (nd < tree.distance(next)) {
+                    tree.set(next, nd, id);
+                    heap.push(nd, next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of buildings in the walkway network.
+     *
+     * @return the number of buildings
+     */
+    public synchronized int nBuildings() {
+        return this.ids.size();
+    }
+
+    public String toString() {
+        return "Walkways between " + nBuildings() + " buildings.";
+    }
+}
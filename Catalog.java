@@ -0,0 +1,61 @@
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * A Catalog is how a Library stores its collection: each title and whether it is available, with running counts of both.
+ * Every change is a single atomic step, so two patrons can never both check out the same copy.
+ * HashCatalog keeps a concurrent map of title to Boolean; BitmapCatalog gives each title a dense id
+ * and keeps availability in a bitmap, for a fraction of the memory per title. SnapshotCatalog reads a catalog snapshot
+ * in place until the first change, then copies it into one of the others.
+ */
+interface Catalog {
+
+    /**
+     * Adds a title if it is not already in the catalog.
+     *
+     * @return true if the title was added, false if it was already there
+     */
+    boolean add(String title, boolean available);
+
+    /**
+     * Removes a title.
+     *
+     * @return whether the title was available, or null if it was not in the catalog
+     */
+    Boolean remove(String title);
+
+    /**
+     * Marks a title checked out if it is available.
+     *
+     * @return true if the title was available and is now checked out
+     */
+    boolean checkOut(String title);
+
+    /**
+     * Marks a title available, whether or not it was checked out.
+     *
+     * @return whether the title was already available, or null if it is not in the catalog
+     */
+    Boolean checkIn(String title);
+
+    /**
+     * Gets whether a title is available, or null if it is not in the catalog.
+     */
+    Boolean get(String title);
+
+    int size();
+
+    long nAvailable();
+
+    long nCheckedOut();
+
+    /**
+     * Passes each title and whether it is available to the action, in no particular order.
+     */
+    void forEach(BiConsumer<String, Boolean> action);
+
+    /**
+     * Passes each available title to the action, in no particular order.
+     */
+    void forEachAvailable(Consumer<String> action);
+}
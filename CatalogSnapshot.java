@@ -0,0 +1,310 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * A CatalogSnapshot is a compact binary copy of a Library's collection, read and written through memory-mapped files.
+ * The file holds a short header, a table of where each title starts, a hash table for finding titles,
+ * a bitmap of which titles are available, and then every title's UTF-8 bytes back to back:
+ *
+ *   int magic, int version, int count, int nAvailable, int tableSize
+ *   int offsets[count + 1]          (byte positions of each title within the title data)
+ *   int hashes[count]               (each title's String hash code)
+ *   int table[tableSize]            (open addressing by hash code: a title's position + 1, or 0 for an empty slot)
+ *   byte available[(count + 7) / 8] (bit i is set if title i is available)
+ *   byte titles[offsets[count]]
+ *
+ * An opened snapshot does not decode anything up front: a title is only turned into a String the first time it is asked for,
+ * and finding a title only decodes the titles whose hash codes match.
+ * Snapshots written before the hash table was added (version 1) can still be opened; finding a title in one decodes every title once.
+ */
+public class CatalogSnapshot {
+
+    private static final int MAGIC = 0x4C494231; // "LIB1"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 20;
+    private static final int V1_HEADER_BYTES = 12; // magic, version, count
+
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final int offsetsStart;
+    private final int hashesStart;
+    private final int tableStart;
+    private final int tableSize; // 0 for a version 1 snapshot, which has no hash table
+    private final int bitmapStart;
+    private final int dataStart;
+    private final String[] decoded; // Titles decoded so far; null until first accessed
+    private volatile long nAvailable = -1; // Read from the header, or counted on first use for a version 1 snapshot
+    private volatile Map<String, Integer> positions; // Only for a version 1 snapshot; built on the first find
+
+    private CatalogSnapshot(MappedByteBuffer buffer, Path path) {
+        int version = buffer.capacity() < V1_HEADER_BYTES || buffer.getInt(0) != MAGIC ? 0 : buffer.getInt(4);
+        if (version != 1 && version != VERSION) {
+            throw new RuntimeException("Not a library catalog snapshot: " + path);
+        }
+        this.buffer = buffer;
+        this.count = buffer.getInt(8);
+        if (version == 1) {
+            this.offsetsStart = V1_HEADER_BYTES;
+            this.tableSize = 0;
+            this.hashesStart = this.offsetsStart + 4 * (this.count + 1);
+            this.tableStart = this.hashesStart;
+        } else {
+            this.nAvailable = buffer.getInt(12);
+            this.tableSize = buffer.getInt(16);
+            this.offsetsStart = HEADER_BYTES;
+            this.hashesStart = this.offsetsStart + 4 * (this.count + 1);
+            this.tableStart = this.hashesStart + 4 * this.count;
+        }
+        this.bitmapStart = this.tableStart + 4 * this.tableSize;
+        this.dataStart = this.bitmapStart + (this.count + 7) / 8;
+        this.decoded = new String[this.count];
+    }
+
+    /**
+     * Opens a snapshot file by mapping it into memory. Titles are decoded lazily as they are accessed.
+     *
+     * @param path the snapshot file to open
+     * @return the opened snapshot
+     * @throws IOException if the file cannot be read
+     * @throws RuntimeException if the file is not a catalog snapshot
+     */
+    public static CatalogSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new CatalogSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), path);
+        }
+    }
+
+    /**
+     * Writes a snapshot of a collection of titles and their availability through a memory-mapped file.
+     * The collection may change while it is written: every title it held when writing started is included,
+     * though titles changed since may appear in their old or new state.
+     *
+     * @param collection each title and whether it is available
+     * @param path       the file to write, replacing any existing file
+     * @throws IOException if the file cannot be written
+     * @throws RuntimeException if the collection is too large for a single snapshot file
+     */
+    public static void write(Map<String, Boolean> collection, Path path) throws IOException {
+        write(collection.size(), collection::forEach, path);
+    }
+
+    /**
+     * Writes a snapshot of a Library's catalog through a memory-mapped file.
+     */
+    static void write(Catalog catalog, Path path) throws IOException {
+        write(catalog.size(), catalog::forEach, path);
+    }
+
+    /**
+     * The entries of a collection, copied before any of the file is written.
+     * The copy grows if the collection grows while it is being copied, so no title is left out.
+     */
+    private static final class Copy implements BiConsumer<String, Boolean> {
+        byte[][] titles;
+        int[] hashes;
+        boolean[] available;
+        int count;
+        int nAvailable;
+        long dataBytes;
+
+        Copy(int expected) {
+            int capacity = Math.max(expected, 16);
+            this.titles = new byte[capacity][];
+            this.hashes = new int[capacity];
+            this.available = new boolean[capacity];
+        }
+
+        @Override
+        public void accept(String title, Boolean isAvailable) {
+            if (this.count == this.titles.length) {
+                int capacity = this.count * 2;
+                this.titles = Arrays.copyOf(this.titles, capacity);
+                this.hashes = Arrays.copyOf(this.hashes, capacity);
+                this.available = Arrays.copyOf(this.available, capacity);
+            }
+            this.titles[this.count] = title.getBytes(StandardCharsets.UTF_8);
+            this.hashes[this.count] = title.hashCode();
+            this.available[this.count] = isAvailable;
+            if (isAvailable) {
+                this.nAvailable++;
+            }
+            this.dataBytes += this.titles[this.count].length;
+            this.count++;
+        }
+    }
+
+    private static void write(int expected, Consumer<BiConsumer<String, Boolean>> entries, Path path) throws IOException {
+        Copy copy = new Copy(expected);
+        entries.accept(copy);
+        int count = copy.count;
+        int tableSize = tableSizeFor(count);
+
+        long total = HEADER_BYTES + 4L * (count + 1) + 4L * count + 4L * tableSize + (count + 7) / 8 + copy.dataBytes;
+        if (total > Integer.MAX_VALUE) {
+            throw new RuntimeException("Collection is too large for a single catalog snapshot.");
+        }
+
+        int[] table = new int[tableSize];
+        for (int i = 0; i < count; i++) {
+            int slot = spread(copy.hashes[i]) & (tableSize - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (tableSize - 1);
+            }
+            table[slot] = i + 1;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, total);
+            out.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(copy.nAvailable).putInt(tableSize);
+            int offset = 0;
+            for (int i = 0; i < count; i++) {
+                out.putInt(offset);
+                offset += copy.titles[i].length;
+            }
+            out.putInt(offset);
+            for (int i = 0; i < count; i++) {
+                out.putInt(copy.hashes[i]);
+            }
+            for (int slot = 0; slot < tableSize; slot++) {
+                out.putInt(table[slot]);
+            }
+            byte bits = 0;
+            for (int i = 0; i < count; i++) {
+                if (copy.available[i]) {
+                    bits |= (byte) (1 << (i & 7));
+                }
+                if ((i & 7) == 7 || i == count - 1) {
+                    out.put(bits);
+                    bits = 0;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                out.put(copy.titles[i]);
+            }
+            out.force();
+        }
+    }
+
+    // A power of two with room for every title at most half full, so probes stay short
+    private static int tableSizeFor(int count) {
+        int size = 2;
+        while (size < 2L * count) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Gets the number of titles in the snapshot.
+     *
+     * @return the number of titles
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Gets the number of titles that were available when the snapshot was taken.
+     *
+     * @return the number of available titles
+     */
+    public long nAvailable() {
+        long n = this.nAvailable;
+        if (n < 0) {
+            n = 0;
+            for (int i = 0; i < this.count; i++) {
+                if (isAvailable(i)) {
+                    n++;
+                }
+            }
+            this.nAvailable = n;
+        }
+        return n;
+    }
+
+    /**
+     * Finds a title in the snapshot, decoding only the titles whose hash codes match it.
+     *
+     * @param title the title to find
+     * @return the position of the title, or -1 if it is not in the snapshot
+     */
+    public int find(String title) {
+        if (this.tableSize == 0) {
+            Integer i = positions().get(title);
+            return i == null ? -1 : i;
+        }
+        int hash = title.hashCode();
+        int mask = this.tableSize - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int entry = this.buffer.getInt(this.tableStart + 4 * slot);
+            if (entry == 0) {
+                return -1;
+            }
+            int i = entry - 1;
+            if (this.buffer.getInt(this.hashesStart + 4 * i) == hash && title(i).equals(title)) {
+                return i;
+            }
+        }
+    }
+
+    // A version 1 snapshot has no hash table, so the first find decodes every title into one
+    private Map<String, Integer> positions() {
+        Map<String, Integer> current = this.positions;
+        if (current == null) {
+            synchronized (this) {
+                current = this.positions;
+                if (current == null) {
+                    current = new HashMap<>(this.count * 4 / 3 + 1);
+                    for (int i = 0; i < this.count; i++) {
+                        current.put(title(i), i);
+                    }
+                    this.positions = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Gets a title from the snapshot, decoding it on first access.
+     *
+     * @param i the position of the title, from 0 to size() - 1
+     * @return the title
+     */
+    public String title(int i) {
+        String title = this.decoded[i];
+        if (title == null) {
+            int start = this.buffer.getInt(this.offsetsStart + 4 * i);
+            int end = this.buffer.getInt(this.offsetsStart + 4 * (i + 1));
+            byte[] bytes = new byte[end - start];
+            this.buffer.get(this.dataStart + start, bytes);
+            title = new String(bytes, StandardCharsets.UTF_8);
+            this.decoded[i] = title; // Racing decoders produce equal Strings, so either one may win
+        }
+        return title;
+    }
+
+    /**
+     * Checks whether a title in the snapshot was available when the snapshot was taken.
+     *
+     * @param i the position of the title, from 0 to size() - 1
+     * @return true if the title was available; false if it was checked out
+     */
+    public boolean isAvailable(int i) {
+        return (this.buffer.get(this.bitmapStart + (i >>> 3)) & (1 << (i & 7))) != 0;
+    }
+}
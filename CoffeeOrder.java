@@ -0,0 +1,44 @@
+/**
+ * A CoffeeOrder is one coffee in a batch sale: its size, and how much sugar and cream it takes.
+ */
+public class CoffeeOrder {
+
+    private final int size;
+    private final int nSugarPackets;
+    private final int nCreams;
+
+    /**
+     * Constructs a new CoffeeOrder.
+     *
+     * @param size          the number of ounces of coffee
+     * @param nSugarPackets the number of sugar packets
+     * @param nCreams       the number of cream portions
+     */
+    public CoffeeOrder(int size, int nSugarPackets, int nCreams) {
+        this.size = size;
+        this.nSugarPackets = nSugarPackets;
+        this.nCreams = nCreams;
+    }
+
+    // Overloaded constructor with default sugar and cream
+    public CoffeeOrder(int size) {
+        this(size, 1, 1); // Default 1 sugar packet, 1 cream
+    }
+
+    /* Accessors */
+    public int getSize() {
+        return this.size;
+    }
+
+    public int getSugarPackets() {
+        return this.nSugarPackets;
+    }
+
+    public int getCreams() {
+        return this.nCreams;
+    }
+
+    public String toString() {
+        return this.size + "oz coffee with " + this.nSugarPackets + " sugar and " + this.nCreams + " cream";
+    }
+}
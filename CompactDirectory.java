@@ -0,0 +1,343 @@
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * A CompactDirectory stores each plain Building as one row of int columns instead of as an object:
+ * ids for its name and address in a shared StringTable, its number of floors, and links to the next row with the same name
+ * and with the same address. That takes a few dozen bytes per building where an object, its strings, and its index entries take hundreds.
+ * Building objects for these rows are made only when a lookup or iteration asks for one, and are not kept.
+ * Because of that, two plain Buildings with the same name, address, and number of floors count as the same building here.
+ *
+ * Subclasses such as Cafe and Library carry state that columns cannot hold, so those objects are kept as they are,
+ * alongside their row. A building added more than once gets a row each time, and removing it takes away its earliest row first.
+ * Removed rows are skipped until more than half of the rows are removed, then the directory is rebuilt.
+ */
+class CompactDirectory implements BuildingDirectory {
+
+    private static final int NONE = -1;
+
+    private StringTable strings = new StringTable();
+    private int[] nameIds = new int[16]; // NONE if the name is null
+    private int[] addressIds = new int[16]; // NONE if the address is null
+    private int[] floors = new int[16]; // 0 once the row is removed
+    private int[] nextByName = new int[16];
+    private int[] nextByAddress = new int[16];
+    private Building[] retained = new Building[16]; // The object kept for a row, or null for a plain building stored only as columns
+    private IdentityHashMap<Building, Integer> retainedRows = new IdentityHashMap<>();
+    private int rows; // Rows used so far, including removed ones
+    private int live;
+
+    // Per string id: the first and last rows using it as a name or address, or NONE
+    private int[] firstByName = new int[0];
+    private int[] lastByName = new int[0];
+    private int[] firstByAddress = new int[0];
+    private int[] lastByAddress = new int[0];
+
+    private boolean retainEverything;
+
+    @Override
+    public boolean add(Building b) {
+        boolean keep = this.retainEverything || b.getClass() != Building.class;
+        boolean listed = keep ? this.retainedRows.containsKey(b) : findPlain(b) != NONE;
+        append(b.getName(), b.getAddress(), b.getFloors(), keep ? b : null);
+        return !listed;
+    }
+
+    @Override
+    public Building remove(Building b) {
+        Integer kept = this.retainedRows.get(b);
+        int row = kept != null ? kept : b.getClass() == Building.class ? findPlain(b) : NONE;
+        if (row == NONE) {
+            return null;
+        }
+        Building removed = this.retained[row] != null ? this.retained[row] : b;
+        if (this.retained[row] != null) {
+            int next = nextRetaining(row);
+            if (next == NONE) {
+                this.retainedRows.remove(removed);
+            } else {
+                this.retainedRows.put(removed, next);
+            }
+            this.retained[row] = null;
+        }
+        this.floors[row] = 0;
+        this.live--;
+        if (this.rows > 64 && this.live * 2 < this.rows) {
+            rebuild();
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean contains(Building b) {
+        return this.retainedRows.containsKey(b) || (b.getClass() == Building.class && findPlain(b) != NONE);
+    }
+
+    @Override
+    public Building firstByName(String name) {
+        if (name == null) {
+            return firstWithNull(this.nameIds);
+        }
+        int id = this.strings.lookup(name);
+        for (int row = id == NONE ? NONE : this.firstByName[id]; row != NONE; row = this.nextByName[row]) {
+            if (this.floors[row] != 0) {
+                return view(row);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Building firstByAddress(String address) {
+        if (address == null) {
+            return firstWithNull(this.addressIds);
+        }
+        int id = this.strings.lookup(address);
+        for (int row = id == NONE ? NONE : this.firstByAddress[id]; row != NONE; row = this.nextByAddress[row]) {
+            if (this.floors[row] != 0) {
+                return view(row);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return this.live;
+    }
+
+    @Override
+    public void forEachListing(BiConsumer<String, String> listing) {
+        for (int row = 0; row < this.rows; row++) {
+            if (this.floors[row] != 0) {
+                listing.accept(string(this.nameIds[row]), string(this.addressIds[row]));
+            }
+        }
+    }
+
+    @Override
+    public void forEachDistinct(Consumer<Building> action) {
+        for (int row = 0; row < this.rows; row++) {
+            if (this.floors[row] == 0) {
+                continue;
+            }
+            Building b = view(row);
+            if (isPlain(row) ? findPlain(b) == row : Objects.equals(this.retainedRows.get(b), row)) { // Equal plain buildings count as one
+                action.accept(b);
+            }
+        }
+    }
+
+    @Override
+    public void retainAll() {
+        this.retainEverything = true;
+        for (int row = 0; row < this.rows; row++) {
+            if (this.floors[row] != 0 && this.retained[row] == null) {
+                this.retained[row] = view(row);
+                this.retainedRows.put(this.retained[row], row);
+            }
+        }
+    }
+
+    @Override
+    public Iterator<Building> iterator() {
+        return new Iterator<Building>() {
+            private int row = skipRemoved(0);
+
+            @Override
+            public boolean hasNext() {
+                return this.row < rows;
+            }
+
+            @Override
+            public Building next() {
+                if (this.row >= rows) {
+                    throw new NoSuchElementException();
+                }
+                Building b = view(this.row);
+                this.row = skipRemoved(this.row + 1);
+                return b;
+            }
+        };
+    }
+
+    private int skipRemoved(int row) {
+        while (row < this.rows && this.floors[row] == 0) {
+            row++;
+        }
+        return row;
+    }
+
+    // The row of a plain building with the same name, address, and floors, or NONE
+    private int findPlain(Building b) {
+        if (b.getName() == null || b.getAddress() == null) {
+            for (int row = 0; row < this.rows; row++) {
+                if (this.floors[row] == b.getFloors() && isPlain(row)
+                    && Objects.equals(string(this.nameIds[row]), b.getName())
+                    && Objects.equals(string(this.addressIds[row]), b.getAddress())) {
+                    return row;
+                }
+            }
+            return NONE;
+        }
+        int nameId = this.strings.lookup(b.getName());
+        int addressId = this.strings.lookup(b.getAddress());
+        if (nameId == NONE || addressId == NONE) {
+            return NONE;
+        }
+        for (int row = this.firstByName[nameId]; row != NONE; row = this.nextByName[row]) {
+            if (this.addressIds[row] == addressId && this.floors[row] == b.getFloors() && isPlain(row)) {
+                return row;
+            }
+        }
+        return NONE;
+    }
+
+    // The next live row after this one that keeps the same object, for a building listed more than once, or NONE
+    private int nextRetaining(int row) {
+        Building b = this.retained[row];
+        if (this.nameIds[row] != NONE) {
+            for (int r = this.nextByName[row]; r != NONE; r = this.nextByName[r]) {
+                if (this.retained[r] == b) {
+                    return r;
+                }
+            }
+            return NONE;
+        }
+        for (int r = row + 1; r < this.rows; r++) {
+            if (this.retained[r] == b) {
+                return r;
+            }
+        }
+        return NONE;
+    }
+
+    // Whether a row holds a plain Building, whether or not its object is being kept
+    private boolean isPlain(int row) {
+        return this.retained[row] == null || this.retained[row].getClass() == Building.class;
+    }
+
+    private Building firstWithNull(int[] ids) {
+        for (int row = 0; row < this.rows; row++) {
+            if (this.floors[row] != 0 && ids[row] == NONE) {
+                return view(row);
+            }
+        }
+        return null;
+    }
+
+    private Building view(int row) {
+        Building b = this.retained[row];
+        if (b == null) {
+            b = new Building(string(this.nameIds[row]), string(this.addressIds[row]), this.floors[row]);
+        }
+        return b;
+    }
+
+    private String string(int id) {
+        return id == NONE ? null : this.strings.get(id);
+    }
+
+    private void append(String name, String address, int nFloors, Building kept) {
+        int row = this.rows++;
+        if (row == this.floors.length) {
+            int n = row * 2;
+            this.nameIds = Arrays.copyOf(this.nameIds, n);
+            this.addressIds = Arrays.copyOf(this.addressIds, n);
+            this.floors = Arrays.copyOf(this.floors, n);
+            this.nextByName = Arrays.copyOf(this.nextByName, n);
+            this.nextByAddress = Arrays.copyOf(this.nextByAddress, n);
+            this.retained = Arrays.copyOf(this.retained, n);
+        }
+        int nameId = name == null ? NONE : this.strings.intern(name);
+        int addressId = address == null ? NONE : this.strings.intern(address);
+        growIndexes();
+        this.nameIds[row] = nameId;
+        this.addressIds[row] = addressId;
+        this.floors[row] = nFloors;
+        this.nextByName[row] = NONE;
+        this.nextByAddress[row] = NONE;
+        this.retained[row] = kept;
+        if (kept != null) {
+            this.retainedRows.putIfAbsent(kept, row); // A building listed more than once is found by its earliest row
+        }
+        if (nameId != NONE) {
+            if (this.lastByName[nameId] == NONE) {
+                this.firstByName[nameId] = row;
+            } else {
+                this.nextByName[this.lastByName[nameId]] = row;
+            }
+            this.lastByName[nameId] = row;
+        }
+        if (addressId != NONE) {
+            if (this.lastByAddress[addressId] == NONE) {
+                this.firstByAddress[addressId] = row;
+            } else {
+                this.nextByAddress[this.lastByAddress[addressId]] = row;
+            }
+            this.lastByAddress[addressId] = row;
+        }
+        this.live++;
+    }
+
+    // Makes room in the per-string indexes for every id the string table has handed out
+    private void growIndexes() {
+        int old = this.firstByName.length;
+        if (this.strings.size() <= old) {
+            return;
+        }
+        int n = Math.max(16, Math.max(this.strings.size(), old * 2));
+        this.firstByName = grow(this.firstByName, n);
+        this.lastByName = grow(this.lastByName, n);
+        this.firstByAddress = grow(this.firstByAddress, n);
+        this.lastByAddress = grow(this.lastByAddress, n);
+    }
+
+    private static int[] grow(int[] a, int n) {
+        int old = a.length;
+        a = Arrays.copyOf(a, n);
+        Arrays.fill(a, old, n, NONE);
+        return a;
+    }
+
+    // Rewrites the directory with only the rows still in use, dropping strings nothing uses any more
+    private void rebuild() {
+        String[] names = new String[this.live];
+        String[] addresses = new String[this.live];
+        int[] nFloors = new int[this.live];
+        Building[] kept = new Building[this.live];
+        int n = 0;
+        for (int row = 0; row < this.rows; row++) {
+            if (this.floors[row] != 0) {
+                names[n] = string(this.nameIds[row]);
+                addresses[n] = string(this.addressIds[row]);
+                nFloors[n] = this.floors[row];
+                kept[n] = this.retained[row];
+                n++;
+            }
+        }
+        int capacity = Math.max(16, n);
+        this.strings = new StringTable();
+        this.nameIds = new int[capacity];
+        this.addressIds = new int[capacity];
+        this.floors = new int[capacity];
+        this.nextByName = new int[capacity];
+        this.nextByAddress = new int[capacity];
+        this.retained = new Building[capacity];
+        this.retainedRows = new IdentityHashMap<>();
+        this.firstByName = new int[0];
+        this.lastByName = new int[0];
+        this.firstByAddress = new int[0];
+        this.lastByAddress = new int[0];
+        this.rows = 0;
+        this.live = 0;
+        for (int i = 0; i < n; i++) {
+            append(names[i], addresses[i], nFloors[i], kept[i]);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+import java.io.PrintStream;
+
+/**
+ * A ConsoleEventSink prints each event's message as soon as it is published.
+ * This is the default sink, and matches the output Buildings have always printed: events without a message are not printed.
+ */
+public class ConsoleEventSink implements EventSink {
+
+    private final PrintStream out;
+
+    /* Default constructor, prints to standard output */
+    public ConsoleEventSink() {
+        this(System.out);
+    }
+
+    /**
+     * Constructs a ConsoleEventSink that prints to the given stream.
+     *
+     * @param out the stream to print messages to
+     */
+    public ConsoleEventSink(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void publish(BuildingEvent event) {
+        String message = event.toMessage();
+        if (message != null) {
+            this.out.println(message);
+        }
+    }
+}
@@ -0,0 +1,328 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * An Elevator simulates a single elevator car serving a building's floor requests, so a building can be sized before it is built.
+ * Requests are queued with the simulated time they are made, then run() plays them out with a LOOK scheduler:
+ * the car keeps moving in one direction while anyone inside or waiting ahead still needs it, picks up every waiting rider
+ * going the same way (up to its capacity), and only turns around once nothing is left ahead.
+ * The simulation jumps straight from one floor or stop to the next, so an hour with tens of thousands of requests runs in milliseconds.
+ */
+public class Elevator {
+
+    private final int nFloors;
+    private final int capacity;
+    private final double secondsPerFloor;
+    private final double secondsPerStop;
+
+    // Queued requests, in the order they were made
+    private double[] times = new double[16];
+    private int[] from = new int[16];
+    private int[] to = new int[16];
+    private int n;
+
+    /**
+     * The results of a simulation run.
+     */
+    public static final class Stats {
+        private final int nServed;
+        private final double duration;
+        private final double[] waits; // Sorted
+        private final double[] rides; // Sorted
+        private final long floorsTravelled;
+        private final long stops;
+
+        Stats(int nServed, double duration, double[] waits, double[] rides, long floorsTravelled, long stops) {
+            this.nServed = nServed;
+            this.duration = duration;
+            this.waits = waits;
+            this.rides = rides;
+            this.floorsTravelled = floorsTravelled;
+            this.stops = stops;
+        }
+
+        private static double mean(double[] values) {
+            double sum = 0;
+            for (double v : values) {
+                sum += v;
+            }
+            return values.length == 0 ? 0 : sum / values.length;
+        }
+
+        // The nearest-rank percentile; p = 0 gives the smallest value
+        private static double percentile(double[] sorted, double p) {
+            if (!(p >= 0 && p <= 100)) {
+                throw new RuntimeException("Percentile must be between 0 and 100.");
+            }
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(p / 100 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+        }
+
+        /* Accessors */
+        public int getServed() {
+            return this.nServed;
+        }
+
+        // Simulated seconds from the first request to the last rider's arrival
+        public double getDuration() {
+            return this.duration;
+        }
+
+        public double getRidersPerHour() {
+            return this.duration == 0 ? 0 : this.nServed * 3600 / this.duration;
+        }
+
+        public double getMeanWait() {
+            return mean(this.waits);
+        }
+
+        public double getWaitPercentile(double p) {
+            return percentile(this.waits, p);
+        }
+
+        public double getMaxWait() {
+            return this.waits.length == 0 ? 0 : this.waits[this.waits.length - 1];
+        }
+
+        public double getMeanRide() {
+            return mean(this.rides);
+        }
+
+        public double getRidePercentile(double p) {
+            return percentile(this.rides, p);
+        }
+
+        public double getMaxRide() {
+            return this.rides.length == 0 ? 0 : this.rides[this.rides.length - 1];
+        }
+
+        public long getFloorsTravelled() {
+            return this.floorsTravelled;
+        }
+
+        public long getStops() {
+            return this.stops;
+        }
+
+        public String toString() {
+            return String.format("%d riders in %.0f s (%.0f per hour); wait mean %.1f s, p95 %.1f s, max %.1f s; "
+                                 + "ride mean %.1f s, p95 %.1f s, max %.1f s; %d floors travelled, %d stops",
+                                 this.nServed, this.duration, getRidersPerHour(), getMeanWait(), getWaitPercentile(95),
+                                 getMaxWait(), getMeanRide(), getRidePercentile(95), getMaxRide(),
+                                 this.floorsTravelled, this.stops);
+        }
+    }
+
+    /**
+     * Constructs a new Elevator simulation.
+     *
+     * @param nFloors         the number of floors the car serves
+     * @param capacity        the most riders the car can hold at once
+     * @param secondsPerFloor how long the car takes to travel one floor
+     * @param secondsPerStop  how long the doors stay open at each stop
+     */
+    public Elevator(int nFloors, int capacity, double secondsPerFloor, double secondsPerStop) {
+        if (nFloors < 1 || capacity < 1 || secondsPerFloor <= 0 || secondsPerStop < 0) {
+            throw new RuntimeException("An elevator needs at least 1 floor, room for 1 rider, and positive travel time.");
+        }
+        this.nFloors = nFloors;
+        this.capacity = capacity;
+        this.secondsPerFloor = secondsPerFloor;
+        this.secondsPerStop = secondsPerStop;
+    }
+
+    /**
+     * Queues a request for a ride.
+     *
+     * @param time      the simulated time, in seconds, at which the rider calls the elevator
+     * @param fromFloor the floor the rider is waiting on
+     * @param toFloor   the floor the rider wants to go to
+     * @throws RuntimeException if either floor does not exist or they are the same floor
+     */
+    public synchronized void request(double time, int fromFloor, int toFloor) {
+        if (fromFloor < 1 || fromFloor > this.nFloors || toFloor < 1 || toFloor > this.nFloors) {
+            throw new RuntimeException("Invalid floor number. Valid range for this elevator is 1-" + this.nFloors + ".");
+        }
+        if (fromFloor == toFloor) {
+            throw new RuntimeException("A ride must go to a different floor.");
+        }
+        if (this.n == this.times.length) {
+            this.times = Arrays.copyOf(this.times, this.n * 2);
+            this.from = Arrays.copyOf(this.from, this.n * 2);
+            this.to = Arrays.copyOf(this.to, this.n * 2);
+        }
+        this.times[this.n] = time;
+        this.from[this.n] = fromFloor;
+        this.to[this.n] = toFloor;
+        this.n++;
+    }
+
+    /**
+     * Gets the number of queued requests.
+     *
+     * @return the number of requests made so far
+     */
+    public synchronized int nRequests() {
+        return this.n;
+    }
+
+    /**
+     * Plays out every queued request, starting with the car idle on the ground floor.
+     * The requests stay queued, so more can be added and the simulation run again.
+     *
+     * @return the throughput, wait-time, and ride-time statistics of the run
+     */
+    public synchronized Stats run() {
+        int n = this.n;
+        int[] order = sortedByTime(n);
+        double[] waits = new double[n];
+        double[] rides = new double[n];
+        double[] boarded = new double[n];
+
+        // Riders waiting to go up or down on each floor, riders in the car by destination,
+        // and how many of either each floor has, so the scheduler can look ahead without walking the queues
+        ArrayDeque<Integer>[] waitingUp = queues();
+        ArrayDeque<Integer>[] waitingDown = queues();
+        ArrayDeque<Integer>[] riding = queues();
+        int[] pending = new int[this.nFloors + 2];
+
+        int next = 0;
+        int served = 0;
+        int load = 0;
+        int floor = 1;
+        int direction = 0; // 1 going up, -1 going down, 0 idle
+        long floorsTravelled = 0;
+        long stops = 0;
+        double start = n == 0 ? 0 : this.times[order[0]];
+        double now = start;
+        double finished = start;
+
+        while (served < n) {
+            // Riders who have called the elevator by now join their floor's queue
+            while (next < n && this.times[order[next]] <= now) {
+                int r = order[next++];
+                (this.to[r] > this.from[r] ? waitingUp : waitingDown)[this.from[r]].add(r);
+                pending[this.from[r]]++;
+            }
+
+            boolean stopped = false;
+            for (Integer r; (r = riding[floor].poll()) != null; ) {
+                rides[r] = now - boarded[r];
+                finished = now;
+                pending[floor]--;
+                load--;
+                served++;
+                stopped = true;
+            }
+
+            if (direction == 0) {
+                direction = !waitingUp[floor].isEmpty() ? 1 : !waitingDown[floor].isEmpty() ? -1 : 0;
+            }
+            if (direction != 0 && (direction > 0 ? waitingUp : waitingDown)[floor].isEmpty()
+                && !pendingBeyond(pending, floor, direction)) {
+                direction = -direction; // Nothing left ahead, so turn around here
+            }
+            if (direction != 0) {
+                ArrayDeque<Integer> boarding = (direction > 0 ? waitingUp : waitingDown)[floor];
+                for (Integer r; load < this.capacity && (r = boarding.poll()) != null; ) {
+                    waits[r] = now - this.times[r];
+                    boarded[r] = now;
+                    pending[floor]--;
+                    riding[this.to[r]].add(r);
+                    pending[this.to[r]]++;
+                    load++;
+                    stopped = true;
+                }
+            }
+            if (stopped) {
+                stops++;
+                now += this.secondsPerStop;
+                continue;
+            }
+
+            if (direction == 0 || !pendingBeyond(pending, floor, direction)) {
+                direction = pendingBeyond(pending, floor, 1) ? 1 : pendingBeyond(pending, floor, -1) ? -1 : 0;
+            }
+            if (direction == 0) {
+                // Nobody is waiting or riding: idle until the next call
+                if (next < n) {
+                    now = Math.max(now, this.times[order[next]]);
+                }
+                continue;
+            }
+            floor += direction;
+            floorsTravelled++;
+            now += this.secondsPerFloor;
+        }
+
+        Arrays.sort(waits);
+        Arrays.sort(rides);
+        return new Stats(n, finished - start, waits, rides, floorsTravelled, stops);
+    }
+
+    private boolean pendingBeyond(int[] pending, int floor, int direction) {
+        for (int f = floor + direction; f >= 1 && f <= this.nFloors; f += direction) {
+            if (pending[f] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArrayDeque<Integer>[] queues() {
+        ArrayDeque<Integer>[] queues = (ArrayDeque<Integer>[]) new ArrayDeque<?>[this.nFloors + 1];
+        for (int f = 1; f <= this.nFloors; f++) {
+            queues[f] = new ArrayDeque<>();
+        }
+        return queues;
+    }
+
+    // Request indices in the order they were made, which is usually already time order
+    private int[] sortedByTime(int n) {
+        boolean sorted = true;
+        for (int i = 1; i < n && sorted; i++) {
+            sorted = this.times[i - 1] <= this.times[i];
+        }
+        if (sorted) {
+            int[] order = new int[n];
+            Arrays.setAll(order, i -> i);
+            return order;
+        }
+        return IntStream.range(0, n).boxed()
+                   .sorted((a, b) -> Double.compare(this.times[a], this.times[b]))
+                   .mapToInt(Integer::intValue).toArray();
+    }
+
+    public String toString() {
+        return "An elevator serving " + this.nFloors + " floors with room for " + this.capacity + " riders.";
+    }
+
+    public static void main(String[] args) {
+        Library neilson = new Library("Neilson", "7 Neilson Drive", 4, true);
+        Elevator elevator = neilson.elevator();
+        System.out.println(elevator);
+
+        // A busy hour, with a rider calling every 6 seconds on average:
+        // most come in on the ground floor and head up, the rest move between floors or leave
+        Random random = new Random(120);
+        double time = 0;
+        while (time < 3600) {
+            time += random.nextDouble() * 12;
+            int fromFloor = random.nextInt(10) < 6 ? 1 : 2 + random.nextInt(3);
+            int toFloor = fromFloor == 1 ? 2 + random.nextInt(3) : random.nextInt(2) == 0 ? 1 : 2 + random.nextInt(3);
+            if (toFloor != fromFloor) {
+                elevator.request(time, fromFloor, toFloor);
+            }
+        }
+        long started = System.nanoTime();
+        Stats stats = elevator.run();
+        System.out.println(stats);
+        System.out.printf("Simulated %d requests in %.1f ms%n", elevator.nRequests(), (System.nanoTime() - started) / 1e6);
+    }
+}
@@ -0,0 +1,253 @@
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+
+/**
+ * An EventPublisher streams BuildingEvents to any number of Flow.Subscribers as they happen.
+ * Each subscriber has its own bounded buffer and is only sent as many events as it has requested, on a delivery thread,
+ * so a slow subscriber falls behind on its own without holding up other subscribers or the building publishing the events.
+ * Publishing never blocks: if a subscriber's buffer is full, that subscriber misses the event and it is counted as dropped.
+ * With nobody subscribed, publishing costs one read, and Buildings do not even build the event.
+ *
+ * An EventPublisher is also an EventSink, so it can be passed to Building.setEventSink to stream every building's activity.
+ */
+public class EventPublisher implements Flow.Publisher<BuildingEvent>, EventSink, AutoCloseable {
+
+    private static final Executor DELIVERY = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "building-event-delivery");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final SubmissionPublisher<BuildingEvent> publisher;
+    private final AtomicInteger nSubscribers = new AtomicInteger(); // Subscribed and not yet cancelled, completed, or failed
+    private final LongAdder dropped = new LongAdder();
+    private final BiPredicate<Flow.Subscriber<? super BuildingEvent>, BuildingEvent> drop = (subscriber, event) -> {
+        this.dropped.increment();
+        return false; // Do not retry; the subscriber carries on with later events
+    };
+
+    /* Default constructor, buffers up to Flow.defaultBufferSize() events per subscriber */
+    public EventPublisher() {
+        this(Flow.defaultBufferSize());
+    }
+
+    /**
+     * Constructs an EventPublisher.
+     *
+     * @param bufferCapacity the number of events each subscriber can fall behind by before it misses events,
+     *                       rounded up to a power of two
+     */
+    public EventPublisher(int bufferCapacity) {
+        if (bufferCapacity < 1) {
+            throw new RuntimeException("Cannot construct an event publisher with a buffer of fewer than 1 event.");
+        }
+        this.publisher = new SubmissionPublisher<>(DELIVERY, bufferCapacity);
+    }
+
+    /**
+     * Adds a subscriber. It is sent events published from now on, as it requests them, until it cancels or this publisher is closed.
+     *
+     * @param subscriber the subscriber to add
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super BuildingEvent> subscriber) {
+        Objects.requireNonNull(subscriber); // Required by the Flow specification
+        this.nSubscribers.incrementAndGet();
+        this.publisher.subscribe(new Counted(subscriber));
+    }
+
+    /**
+     * Offers an event to every subscriber without blocking. Subscribers whose buffers are full miss it.
+     *
+     * @param event the event to publish
+     */
+    @Override
+    public void publish(BuildingEvent event) {
+        if (this.nSubscribers.get() == 0) {
+            return;
+        }
+        try {
+            this.publisher.offer(event, this.drop);
+        } catch (IllegalStateException e) {
+            this.dropped.increment(); // Closed while the event was on its way
+        }
+    }
+
+    /**
+     * Checks whether anyone is subscribed, so that callers can skip building events nobody will receive.
+     *
+     * @return true if at least one subscriber has not cancelled, completed, or failed
+     */
+    public boolean hasSubscribers() {
+        return this.nSubscribers.get() > 0;
+    }
+
+    /* Accessors */
+    public int nSubscribers() {
+        return this.nSubscribers.get();
+    }
+
+    /**
+     * Gets the number of times a subscriber missed an event because its buffer was full or this publisher was closed.
+     *
+     * @return the number of dropped deliveries
+     */
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    /**
+     * Stops publishing. Each subscriber is sent the events already in its buffer, then onComplete.
+     */
+    @Override
+    public void close() {
+        this.publisher.close();
+    }
+
+    /**
+     * Passes everything through to a subscriber, and stops counting it once it cancels, completes, or fails.
+     * A subscriber that throws is cancelled by the SubmissionPublisher without being told, so that counts as failing too.
+     */
+    private final class Counted implements Flow.Subscriber<BuildingEvent>, Flow.Subscription {
+        private final Flow.Subscriber<? super BuildingEvent> subscriber;
+        private final AtomicBoolean ended = new AtomicBoolean();
+        private volatile Flow.Subscription subscription;
+
+        Counted(Flow.Subscriber<? super BuildingEvent> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            try {
+                this.subscriber.onSubscribe(this);
+            } catch (Throwable e) {
+                end();
+                throw e;
+            }
+        }
+
+        @Override
+        public void onNext(BuildingEvent event) {
+            try {
+                this.subscriber.onNext(event);
+            } catch (Throwable e) {
+                end();
+                throw e;
+            }
+        }
+
+        @Override
+        public void onError(Throwable failure) {
+            end();
+            this.subscriber.onError(failure);
+        }
+
+        @Override
+        public void onComplete() {
+            end();
+            this.subscriber.onComplete();
+        }
+
+        @Override
+        public void request(long n) {
+            this.subscription.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            end();
+            this.subscription.cancel();
+        }
+
+        private void end() {
+            if (this.ended.compareAndSet(false, true)) {
+                nSubscribers.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * A subscriber that asks for one event at a time and takes a while over each, to show a slow consumer being left behind.
+     */
+    private static class SlowSubscriber implements Flow.Subscriber<BuildingEvent> {
+        final LongAdder received = new LongAdder();
+        final CountDownLatch done = new CountDownLatch(1);
+        private Flow.Subscription subscription;
+
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        public void onNext(BuildingEvent event) {
+            this.received.increment();
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.subscription.request(1);
+        }
+
+        public void onError(Throwable failure) {
+            this.done.countDown();
+        }
+
+        public void onComplete() {
+            this.done.countDown();
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Building.setEventSink(EventSink.NONE); // Keep the console quiet; the cafe's events still go to its own stream
+        Cafe cafe = new Cafe("Campus Cafe", "5 Chapin Way", 1, 100000, 50000, 50000, 50000);
+
+        // A dashboard that keeps up, and an auditor that does not
+        LongAdder seen = new LongAdder();
+        CountDownLatch dashboardDone = new CountDownLatch(1);
+        cafe.events().subscribe(new Flow.Subscriber<BuildingEvent>() {
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            public void onNext(BuildingEvent event) {
+                if (event.getType() == BuildingEvent.Type.COFFEE_SOLD) {
+                    seen.increment();
+                }
+            }
+
+            public void onError(Throwable failure) {
+                dashboardDone.countDown();
+            }
+
+            public void onComplete() {
+                dashboardDone.countDown();
+            }
+        });
+        SlowSubscriber auditor = new SlowSubscriber();
+        cafe.events().subscribe(auditor);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 2000; i++) {
+            cafe.sellCoffee(12, 1, 1);
+        }
+        long elapsed = System.nanoTime() - start;
+        cafe.events().close();
+        dashboardDone.await();
+        auditor.done.await();
+
+        System.out.println("2000 coffees sold in " + elapsed / 1_000_000 + " ms.");
+        System.out.println("Dashboard saw " + seen.sum() + " sales, auditor saw " + auditor.received.sum() + "; "
+                           + cafe.events().getDropped() + " deliveries were dropped instead of holding up the cafe.");
+    }
+}
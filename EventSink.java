@@ -0,0 +1,18 @@
+/**
+ * An EventSink receives the BuildingEvents published by Buildings and CampusMaps.
+ * Implementations decide where events go: the console, a background writer, or nowhere at all.
+ */
+public interface EventSink {
+
+    /**
+     * A sink that discards every event, useful for benchmarking.
+     */
+    EventSink NONE = event -> { };
+
+    /**
+     * Publishes an event to this sink. Implementations should return quickly.
+     *
+     * @param event the event to publish
+     */
+    void publish(BuildingEvent event);
+}
@@ -0,0 +1,90 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * A HashCatalog keeps a lock-free concurrent map from each title to its availability: lookups never block,
+ * and checking out or returning a book is a single compare-and-set on the title's entry.
+ */
+class HashCatalog implements Catalog {
+
+    private final ConcurrentHashMap<String, Boolean> titles;
+    private final LongAdder nAvailable = new LongAdder(); // Kept in step with titles
+
+    HashCatalog(int expectedSize) {
+        this.titles = new ConcurrentHashMap<>(expectedSize * 4 / 3 + 1);
+    }
+
+    @Override
+    public boolean add(String title, boolean available) {
+        if (this.titles.putIfAbsent(title, available) != null) {
+            return false;
+        }
+        if (available) {
+            this.nAvailable.increment();
+        }
+        return true;
+    }
+
+    @Override
+    public Boolean remove(String title) {
+        Boolean removed = this.titles.remove(title);
+        if (Boolean.TRUE.equals(removed)) {
+            this.nAvailable.decrement();
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean checkOut(String title) {
+        if (!this.titles.replace(title, true, false)) {
+            return false;
+        }
+        this.nAvailable.decrement();
+        return true;
+    }
+
+    @Override
+    public Boolean checkIn(String title) {
+        Boolean previous = this.titles.replace(title, true);
+        if (Boolean.FALSE.equals(previous)) {
+            this.nAvailable.increment();
+        }
+        return previous;
+    }
+
+    @Override
+    public Boolean get(String title) {
+        return this.titles.get(title);
+    }
+
+    @Override
+    public int size() {
+        return this.titles.size();
+    }
+
+    @Override
+    public long nAvailable() {
+        return this.nAvailable.sum();
+    }
+
+    @Override
+    public long nCheckedOut() {
+        return Math.max(size() - nAvailable(), 0); // The two counts can briefly disagree while titles are changing
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, Boolean> action) {
+        this.titles.forEach(action);
+    }
+
+    @Override
+    public void forEachAvailable(Consumer<String> action) {
+        this.titles.forEach((title, available) -> {
+            if (available) {
+                action.accept(title);
+            }
+        });
+    }
+}
@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.Map;
 
 /**
  * A House can contain a list of residents and might have a dining room.
@@ -7,7 +8,7 @@ import java.util.ArrayList;
  */
 public class House extends Building {
 
-   private ArrayList<String> residents;
+   private ResidentSet residents; // Hashed, in move-in order
    private boolean hasDiningRoom;
    private boolean hasElevator;
 
@@ -24,8 +25,8 @@ public class House extends Building {
        super(name, address, nFloors);
        this.hasDiningRoom = hasDiningRoom;
        this.hasElevator = hasElevator;
-       this.residents = new ArrayList<>();
-       System.out.println("You have built a house!");
+       this.residents = new ResidentSet();
+       publish(BuildingEvent.Type.BUILT, "house", 0);
    }
 
    /**
@@ -41,16 +42,40 @@ public class House extends Building {
    }
 
    /**
-    * Moves a group of residents into the house at once.
+    * Moves a group of residents into the house at once. Names that already live here are skipped.
+    * Runs in time linear in the size of the group.
     *
     * @param newResidents the list of resident names to move in
     */
    public void moveIn(ArrayList<String> newResidents) {
+       long start = System.nanoTime();
+       this.residents.ensureCapacity(newResidents.size());
        for (String resident : newResidents) {
-           if (!this.isResident(resident)) {
-               this.residents.add(resident);
+           if (this.residents.add(resident)) {
+               publish(BuildingEvent.Type.MOVED_IN, resident, this.residents.size());
            }
        }
+       metrics().record(BuildingMetrics.Op.MOVE_IN, start);
+   }
+
+   /**
+    * Moves a group of residents out of the house at once. Names that do not live here are skipped.
+    * Runs in time linear in the size of the group.
+    *
+    * @param leavingResidents the list of resident names to move out
+    * @return the names of the people who moved out
+    */
+   public ArrayList<String> moveOut(ArrayList<String> leavingResidents) {
+       long start = System.nanoTime();
+       ArrayList<String> movedOut = new ArrayList<>();
+       for (String resident : leavingResidents) {
+           if (this.residents.remove(resident)) {
+               movedOut.add(resident);
+               publish(BuildingEvent.Type.MOVED_OUT, resident, this.residents.size());
+           }
+       }
+       metrics().record(BuildingMetrics.Op.MOVE_OUT, start);
+       return movedOut;
    }
 
    /**
@@ -63,19 +88,42 @@ public class House extends Building {
    }
 
    /**
-    * Moves to the specified floor in the house. If the house has an elevator,
+    * Moves a visitor to the specified floor in the house, reporting why not instead of throwing. If the house has an elevator,
     * it allows non-adjacent floor access.
     *
+    * @param visitor  the visitor moving
     * @param floorNum the floor number to navigate to
-    * @throws RuntimeException if the floor transition is not valid without an elevator
+    * @return OK, NO_ELEVATOR if the floor transition is not valid without an elevator, or another reason the move failed
     */
    @Override
-   public void goToFloor(int floorNum) {
-       if (hasElevator || Math.abs(this.activeFloor - floorNum) == 1) {
-           super.goToFloor(floorNum);
-       } else {
-           throw new RuntimeException("This house does not have an elevator. You can only move to adjacent floors.");
+   protected Status tryGoToFloor(Visitor visitor, int floorNum) {
+       // Only a visitor inside this building has a floor to measure from; anyone else gets the reason from Building
+       if (!hasElevator && checkVisitor(visitor) == Status.OK && Math.abs(visitor.getFloor() - floorNum) != 1) {
+           return Status.NO_ELEVATOR;
+       }
+       return super.tryGoToFloor(visitor, floorNum);
+   }
+
+   @Override
+   protected RuntimeException failure(Status status, Visitor visitor, int floorNum, String notInside) {
+       if (status == Status.NO_ELEVATOR) {
+           return new RuntimeException("This house does not have an elevator. You can only move to adjacent floors.");
        }
+       return super.failure(status, visitor, floorNum, notInside);
+   }
+
+   /**
+    * Creates a simulation of this house's elevator, for working out how many riders it can serve and how long they wait.
+    * The car holds 8 riders, takes 2 seconds per floor, and stops for 8 seconds to let riders on and off.
+    *
+    * @return a new elevator simulation with no requests queued
+    * @throws RuntimeException if the house does not have an elevator
+    */
+   public Elevator elevator() {
+       if (!hasElevator) {
+           throw new RuntimeException("This house does not have an elevator.");
+       }
+       return new Elevator(this.nFloors, 8, 2.0, 8.0);
    }
 
    /**
@@ -113,13 +161,27 @@ public class House extends Building {
     * @throws RuntimeException if the person is already a resident
     */
    public void moveIn(String name) {
-       if (isResident(name)) {
+       if (tryMoveIn(name) != Status.OK) {
            throw new RuntimeException("The resident is already in the house. Can't be moved in.");
-       } else {
-           this.residents.add(name);
        }
    }
 
+   /**
+    * Moves a new resident into the house, reporting a resident who already lives here instead of throwing.
+    *
+    * @param name the name of the person to move in
+    * @return OK, or ALREADY_PRESENT if the person is already a resident
+    */
+   public Status tryMoveIn(String name) {
+       long start = System.nanoTime();
+       if (!this.residents.add(name)) {
+           return Status.ALREADY_PRESENT;
+       }
+       publish(BuildingEvent.Type.MOVED_IN, name, this.residents.size());
+       metrics().record(BuildingMetrics.Op.MOVE_IN, start);
+       return Status.OK;
+   }
+
    /**
     * Moves a resident out of the house. If the person is not a resident, throws an exception.
     *
@@ -128,12 +190,32 @@ public class House extends Building {
     * @throws RuntimeException if the person is not a resident
     */
    public String moveOut(String name) {
-       if (!isResident(name)) {
+       if (tryMoveOut(name) != Status.OK) {
            throw new RuntimeException("The resident is not in the house. Can't be moved out.");
-       } else {
-           this.residents.remove(name);
-           return name;
        }
+       return name;
+   }
+
+   /**
+    * Moves a resident out of the house, reporting a person who does not live here instead of throwing.
+    *
+    * @param name the name of the person to move out
+    * @return OK, or NOT_FOUND if the person is not a resident
+    */
+   public Status tryMoveOut(String name) {
+       long start = System.nanoTime();
+       if (!this.residents.remove(name)) {
+           return Status.NOT_FOUND;
+       }
+       publish(BuildingEvent.Type.MOVED_OUT, name, this.residents.size());
+       metrics().record(BuildingMetrics.Op.MOVE_OUT, start);
+       return Status.OK;
+   }
+
+   @Override
+   protected void gauges(Map<String, Long> gauges) {
+       super.gauges(gauges);
+       gauges.put("residents", (long) this.residents.size());
    }
 
    /**
@@ -163,6 +245,9 @@ public class House extends Building {
        Ziskind.moveOut("Trang");
        Ziskind.isResident("Duong");
 
+       // The try methods report the same outcomes without throwing
+       System.out.println("Moving Jenny out: " + Ziskind.tryMoveOut("Jenny"));
+
        System.out.println(Ziskind);
 
        // Create a House object with an elevator
@@ -184,6 +269,7 @@ public class House extends Building {
        group.add("Alice");
        group.add("Bob");
        Emerson.moveIn(group); // Using overloaded moveIn
+       Emerson.moveOut(group); // Using overloaded moveOut
 
        // Exit the house
        Cutter.exit();
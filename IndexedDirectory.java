@@ -0,0 +1,141 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * An IndexedDirectory keeps every Building object in a linked hash set, for directory order with constant-time removal,
+ * plus hash indexes from each name and address to the buildings that have it.
+ * A building added more than once gets a listing each time, and removing it takes away its earliest listing first.
+ */
+class IndexedDirectory implements BuildingDirectory {
+
+    /**
+     * One listing in the directory. Listings of the same building are linked in the order they were added.
+     */
+    private static final class Listing {
+        final Building building;
+        Listing nextCopy;
+
+        Listing(Building building) {
+            this.building = building;
+        }
+    }
+
+    private final LinkedHashSet<Listing> listings = new LinkedHashSet<>(); // Keeps directory order while allowing O(1) removal
+    private final IdentityHashMap<Building, Listing> firstListing = new IdentityHashMap<>(); // Each building's earliest listing
+    private final HashMap<String, ArrayList<Building>> byName = new HashMap<>(); // Buildings sharing each name, in the order they were added
+    private final HashMap<String, ArrayList<Building>> byAddress = new HashMap<>(); // Buildings sharing each address, in the order they were added
+
+    @Override
+    public boolean add(Building b) {
+        Listing listing = new Listing(b);
+        listings.add(listing);
+        Listing first = firstListing.putIfAbsent(b, listing);
+        if (first != null) {
+            while (first.nextCopy != null) {
+                first = first.nextCopy;
+            }
+            first.nextCopy = listing;
+        }
+        index(byName, b.getName(), b);
+        index(byAddress, b.getAddress(), b);
+        return first == null;
+    }
+
+    @Override
+    public Building remove(Building b) {
+        Listing first = firstListing.remove(b);
+        if (first == null) {
+            return null;
+        }
+        if (first.nextCopy != null) {
+            firstListing.put(b, first.nextCopy);
+        }
+        listings.remove(first);
+        unindex(byName, b.getName(), b);
+        unindex(byAddress, b.getAddress(), b);
+        return b;
+    }
+
+    @Override
+    public boolean contains(Building b) {
+        return firstListing.containsKey(b);
+    }
+
+    @Override
+    public Building firstByName(String name) {
+        return first(byName, name);
+    }
+
+    @Override
+    public Building firstByAddress(String address) {
+        return first(byAddress, address);
+    }
+
+    @Override
+    public int size() {
+        return listings.size();
+    }
+
+    @Override
+    public void forEachListing(BiConsumer<String, String> listing) {
+        for (Listing l : listings) {
+            listing.accept(l.building.getName(), l.building.getAddress());
+        }
+    }
+
+    @Override
+    public void forEachDistinct(Consumer<Building> action) {
+        for (Listing l : listings) {
+            if (firstListing.get(l.building) == l) {
+                action.accept(l.building);
+            }
+        }
+    }
+
+    @Override
+    public void retainAll() {
+        // Every Building object is already kept
+    }
+
+    @Override
+    public Iterator<Building> iterator() {
+        Iterator<Listing> it = listings.iterator();
+        return new Iterator<Building>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Building next() {
+                return it.next().building;
+            }
+        };
+    }
+
+    private static void index(HashMap<String, ArrayList<Building>> index, String key, Building b) {
+        ArrayList<Building> bucket = index.get(key);
+        if (bucket == null) {
+            bucket = new ArrayList<Building>(1);
+            index.put(key, bucket);
+        }
+        bucket.add(b);
+    }
+
+    private static void unindex(HashMap<String, ArrayList<Building>> index, String key, Building b) {
+        ArrayList<Building> bucket = index.get(key);
+        if (bucket != null && bucket.remove(b) && bucket.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private static Building first(HashMap<String, ArrayList<Building>> index, String key) {
+        ArrayList<Building> bucket = index.get(key);
+        return bucket == null ? null : bucket.get(0);
+    }
+}
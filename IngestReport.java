@@ -0,0 +1,64 @@
+/**
+ * An IngestReport summarizes a bulk load of titles into a Library: how much of the file has been read,
+ * how many new titles it added, how many it skipped, and how fast it went.
+ * While an ingest is running, its progress reports count the batches finished so far.
+ */
+public class IngestReport {
+
+    private final long bytesRead;
+    private final long linesRead;
+    private final long titlesAdded;
+    private final long duplicates;
+    private final long elapsedNanos;
+    private final boolean finished;
+
+    IngestReport(long bytesRead, long linesRead, long titlesAdded, long duplicates, long elapsedNanos, boolean finished) {
+        this.bytesRead = bytesRead;
+        this.linesRead = linesRead;
+        this.titlesAdded = titlesAdded;
+        this.duplicates = duplicates;
+        this.elapsedNanos = elapsedNanos;
+        this.finished = finished;
+    }
+
+    /* Accessors */
+    public long getBytesRead() {
+        return this.bytesRead;
+    }
+
+    public long getLinesRead() {
+        return this.linesRead;
+    }
+
+    public long getTitlesAdded() {
+        return this.titlesAdded;
+    }
+
+    // Titles already in the collection, or repeated earlier in the file
+    public long getDuplicates() {
+        return this.duplicates;
+    }
+
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    public boolean isFinished() {
+        return this.finished;
+    }
+
+    public double titlesPerSecond() {
+        return this.elapsedNanos == 0 ? 0 : (this.titlesAdded + this.duplicates) * 1e9 / this.elapsedNanos;
+    }
+
+    public double megabytesPerSecond() {
+        return this.elapsedNanos == 0 ? 0 : this.bytesRead * 1e3 / this.elapsedNanos;
+    }
+
+    public String toString() {
+        return String.format("%s %d lines (%.1f MB): %d titles added, %d duplicates skipped, in %.2f s (%.0f titles/s, %.1f MB/s).",
+                             this.finished ? "Ingested" : "Ingesting...", this.linesRead, this.bytesRead / 1e6,
+                             this.titlesAdded, this.duplicates, this.elapsedNanos / 1e9,
+                             titlesPerSecond(), megabytesPerSecond());
+    }
+}
@@ -0,0 +1,175 @@
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An Inventory holds a Cafe's coffee, sugar packets, cream, and cups.
+ * All four levels live in a single immutable snapshot that is swapped with compare-and-set,
+ * so a sale reserves every resource together without taking a lock and no level can go negative.
+ * Every change also bumps a version number, which lets a Journal tell which changes a checkpoint already includes.
+ */
+public class Inventory {
+
+    private final AtomicReference<Levels> levels;
+
+    /**
+     * An immutable snapshot of the four inventory levels and the version that produced them.
+     */
+    static final class Levels {
+        final int coffee;
+        final int sugar;
+        final int creams;
+        final int cups;
+        final long version;
+
+        Levels(int coffee, int sugar, int creams, int cups, long version) {
+            this.coffee = coffee;
+            this.sugar = sugar;
+            this.creams = creams;
+            this.cups = cups;
+            this.version = version;
+        }
+
+        boolean covers(int coffee, int sugar, int creams, int cups) {
+            return this.coffee >= coffee && this.sugar >= sugar && this.creams >= creams && this.cups >= cups;
+        }
+    }
+
+    /**
+     * Constructs a new Inventory with the given starting levels.
+     *
+     * @param coffee ounces of coffee
+     * @param sugar  sugar packets
+     * @param creams cream portions
+     * @param cups   cups
+     */
+    public Inventory(int coffee, int sugar, int creams, int cups) {
+        this.levels = new AtomicReference<>(new Levels(coffee, sugar, creams, cups, 0));
+    }
+
+    /**
+     * Atomically takes the requested amounts out of stock if all of them are available.
+     *
+     * @param coffee ounces of coffee to take
+     * @param sugar  sugar packets to take
+     * @param creams cream portions to take
+     * @param cups   cups to take
+     * @return true if the whole reservation was made; false if any resource was short (nothing is taken)
+     */
+    public boolean tryReserve(int coffee, int sugar, int creams, int cups) {
+        return reserve(coffee, sugar, creams, cups) >= 0;
+    }
+
+    /**
+     * Atomically takes the requested amounts out of stock if all of them are available.
+     *
+     * @return the version of the levels the reservation produced, or -1 if any resource was short
+     */
+    long reserve(int coffee, int sugar, int creams, int cups) {
+        while (true) {
+            Levels current = this.levels.get();
+            if (!current.covers(coffee, sugar, creams, cups)) {
+                return -1;
+            }
+            Levels next = new Levels(current.coffee - coffee, current.sugar - sugar,
+                                     current.creams - creams, current.cups - cups, current.version + 1);
+            if (this.levels.compareAndSet(current, next)) {
+                return next.version;
+            }
+        }
+    }
+
+    /**
+     * Atomically tops up every resource that is below the requested amount by that amount.
+     * This mirrors the Cafe's restocking rule: a resource is only restocked when it is short.
+     *
+     * @param coffee ounces of coffee needed
+     * @param sugar  sugar packets needed
+     * @param creams cream portions needed
+     * @param cups   cups needed
+     * @return the levels as they were just before the top-up, so the caller can tell what was restocked;
+     *         the top-up itself produced version + 1
+     */
+    Levels restock(int coffee, int sugar, int creams, int cups) {
+        while (true) {
+            Levels current = this.levels.get();
+            Levels next = new Levels(current.coffee < coffee ? current.coffee + coffee : current.coffee,
+                                     current.sugar < sugar ? current.sugar + sugar : current.sugar,
+                                     current.creams < creams ? current.creams + creams : current.creams,
+                                     current.cups < cups ? current.cups + cups : current.cups,
+                                     current.version + 1);
+            if (this.levels.compareAndSet(current, next)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Atomically adds the given amounts to stock, as for a delivery.
+     *
+     * @return the levels as they were just before the delivery; the delivery itself produced version + 1
+     */
+    Levels add(int coffee, int sugar, int creams, int cups) {
+        while (true) {
+            Levels current = this.levels.get();
+            Levels next = new Levels(current.coffee + coffee, current.sugar + sugar, current.creams + creams,
+                                     current.cups + cups, current.version + 1);
+            if (this.levels.compareAndSet(current, next)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Atomically adds (or, with negative amounts, removes) stock without any checks, as when replaying a journal.
+     * The version becomes the larger of the current version and the given one.
+     */
+    void adjust(int coffee, int sugar, int creams, int cups, long version) {
+        while (true) {
+            Levels current = this.levels.get();
+            Levels next = new Levels(current.coffee + coffee, current.sugar + sugar, current.creams + creams,
+                                     current.cups + cups, Math.max(current.version, version));
+            if (this.levels.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets a consistent snapshot of all four levels and their version.
+     */
+    Levels levels() {
+        return this.levels.get();
+    }
+
+    /**
+     * Replaces all four levels and the version at once, as when restoring a checkpoint.
+     */
+    void reset(Levels levels) {
+        this.levels.set(levels);
+    }
+
+    /**
+     * Checks whether the requested amounts are currently in stock.
+     *
+     * @return true if every resource covers the request; false otherwise
+     */
+    public boolean has(int coffee, int sugar, int creams, int cups) {
+        return this.levels.get().covers(coffee, sugar, creams, cups);
+    }
+
+    /* Accessors */
+    public int getCoffeeOunces() {
+        return this.levels.get().coffee;
+    }
+
+    public int getSugarPackets() {
+        return this.levels.get().sugar;
+    }
+
+    public int getCreams() {
+        return this.levels.get().creams;
+    }
+
+    public int getCups() {
+        return this.levels.get().cups;
+    }
+}
@@ -0,0 +1,157 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * InventoryShards splits a Cafe's stock between its registers, so sales at busy registers do not all contend on the same levels.
+ * Each register sells from its own allotment, kept in its own cache line, and a thread always sells at the same register.
+ * A register only goes to the cafe's central Inventory when its allotment cannot cover a sale: it takes the sale from the
+ * central stock plus a share of what is left there for later sales. If the central stock cannot cover the sale either,
+ * every register's allotment is brought back into it first, so a sale only comes up short when the cafe as a whole is short.
+ *
+ * Stock only moves between the registers and the central stock under a lock, while a sequence number is odd,
+ * so levels() can add everything up without counting stock on the move twice or not at all.
+ */
+class InventoryShards {
+
+    static final int SHORT = -1; // The cafe as a whole could not cover the sale
+    static final int LOCAL = 0; // The sale came out of the register's own allotment
+    static final int BORROWED = 1; // The register had to go to the central stock
+
+    private static final int STRIDE = 16; // Pads registers apart so their levels do not share cache lines
+    private static final Inventory.Levels EMPTY = new Inventory.Levels(0, 0, 0, 0, 0);
+
+    private final Inventory central;
+    private final int nRegisters;
+    private final AtomicReferenceArray<Inventory.Levels> registers;
+    private volatile long moves; // Odd while stock is moving; only changed under this object's lock
+
+    InventoryShards(Inventory central, int nRegisters) {
+        this.central = central;
+        this.nRegisters = nRegisters;
+        this.registers = new AtomicReferenceArray<>(nRegisters * STRIDE);
+        for (int i = 0; i < nRegisters; i++) {
+            this.registers.set(i * STRIDE, EMPTY);
+        }
+    }
+
+    /**
+     * Takes a sale out of the calling thread's register, going to the central stock if the register is short.
+     *
+     * @return LOCAL or BORROWED if the sale was reserved, or SHORT if the whole cafe does not have enough
+     */
+    int reserve(int coffee, int sugar, int creams, int cups) {
+        int slot = (int) (Thread.currentThread().getId() % this.nRegisters) * STRIDE;
+        if (take(slot, coffee, sugar, creams, cups)) {
+            return LOCAL;
+        }
+        return borrow(slot, coffee, sugar, creams, cups) ? BORROWED : SHORT;
+    }
+
+    /**
+     * Adds up the central stock and every register's allotment.
+     * The version is the central stock's, which only changes when stock is delivered or moves to or from a register.
+     */
+    Inventory.Levels levels() {
+        while (true) {
+            long seen = this.moves;
+            if ((seen & 1) == 0) {
+                Inventory.Levels c = this.central.levels();
+                int coffee = c.coffee;
+                int sugar = c.sugar;
+                int creams = c.creams;
+                int cups = c.cups;
+                for (int i = 0; i < this.nRegisters; i++) {
+                    Inventory.Levels r = this.registers.get(i * STRIDE);
+                    coffee += r.coffee;
+                    sugar += r.sugar;
+                    creams += r.creams;
+                    cups += r.cups;
+                }
+                if (this.moves == seen) {
+                    return new Inventory.Levels(coffee, sugar, creams, cups, c.version);
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Restocks the cafe as a whole: every register's allotment is brought back into the central stock first,
+     * so a resource is only topped up when the cafe's total is short, not just the central stock.
+     *
+     * @return the cafe's total levels just before the top-up, as Inventory.restock returns them
+     */
+    synchronized Inventory.Levels restock(int coffee, int sugar, int creams, int cups) {
+        this.moves++;
+        try {
+            rebalance();
+            return this.central.restock(coffee, sugar, creams, cups);
+        } finally {
+            this.moves++;
+        }
+    }
+
+    private boolean take(int slot, int coffee, int sugar, int creams, int cups) {
+        while (true) {
+            Inventory.Levels current = this.registers.get(slot);
+            if (!current.covers(coffee, sugar, creams, cups)) {
+                return false;
+            }
+            Inventory.Levels next = new Inventory.Levels(current.coffee - coffee, current.sugar - sugar,
+                                                         current.creams - creams, current.cups - cups, current.version + 1);
+            if (this.registers.compareAndSet(slot, current, next)) {
+                return true;
+            }
+        }
+    }
+
+    // Fills the sale from the central stock, and gives the register a share of what is left there
+    private synchronized boolean borrow(int slot, int coffee, int sugar, int creams, int cups) {
+        if (take(slot, coffee, sugar, creams, cups)) {
+            return true; // Another sale at this register borrowed while we waited for the lock
+        }
+        this.moves++;
+        try {
+            if (!this.central.has(coffee, sugar, creams, cups)) {
+                rebalance();
+            }
+            // Only deliveries change the central stock outside this lock, and they only add to it
+            Inventory.Levels c = this.central.levels();
+            if (!c.covers(coffee, sugar, creams, cups)) {
+                return false;
+            }
+            int share = 2 * this.nRegisters;
+            int extraCoffee = (c.coffee - coffee) / share;
+            int extraSugar = (c.sugar - sugar) / share;
+            int extraCreams = (c.creams - creams) / share;
+            int extraCups = (c.cups - cups) / share;
+            this.central.reserve(coffee + extraCoffee, sugar + extraSugar, creams + extraCreams, cups + extraCups);
+            while (true) {
+                Inventory.Levels current = this.registers.get(slot);
+                Inventory.Levels next = new Inventory.Levels(current.coffee + extraCoffee, current.sugar + extraSugar,
+                                                             current.creams + extraCreams, current.cups + extraCups,
+                                                             current.version + 1);
+                if (this.registers.compareAndSet(slot, current, next)) {
+                    return true;
+                }
+            }
+        } finally {
+            this.moves++;
+        }
+    }
+
+    // Brings every register's allotment back into the central stock; must hold the lock with moves odd
+    private void rebalance() {
+        int coffee = 0;
+        int sugar = 0;
+        int creams = 0;
+        int cups = 0;
+        for (int i = 0; i < this.nRegisters; i++) {
+            Inventory.Levels r = this.registers.getAndSet(i * STRIDE, EMPTY);
+            coffee += r.coffee;
+            sugar += r.sugar;
+            creams += r.creams;
+            cups += r.cups;
+        }
+        this.central.add(coffee, sugar, creams, cups);
+    }
+}
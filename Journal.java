@@ -0,0 +1,420 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * A Journal is an append-only write-ahead log of the changes made to a Cafe's inventory or a Library's collection.
+ * Operations append a record to an in-memory buffer, and a background committer thread writes everything appended
+ * since its last pass and forces it to disk with a single fsync, so many concurrent operations share one fsync.
+ * By default operations do not wait for their record to reach disk; a journal opened with syncCommit makes every
+ * append wait until its group has been forced.
+ *
+ * Each record is stored as an int length, an int CRC32 of the payload, and the payload itself:
+ * a byte op, a long version, four int amounts, and the UTF-8 bytes of a title. Recovery stops at the first
+ * truncated or corrupt record, which is where a crash cut off the last write.
+ */
+public class Journal implements AutoCloseable {
+
+    /**
+     * The kinds of change a Journal records.
+     */
+    public enum Op {
+        SELL,
+        RESTOCK,
+        CHECKPOINT,
+        CHECK_OUT,
+        RETURN,
+        ADD_TITLE,
+        REMOVE_TITLE
+    }
+
+    /**
+     * One change read back from a Journal.
+     */
+    public static class Record {
+        private final Op op;
+        private final long version;
+        private final int coffee;
+        private final int sugar;
+        private final int creams;
+        private final int cups;
+        private final String title;
+
+        Record(Op op, long version, int coffee, int sugar, int creams, int cups, String title) {
+            this.op = op;
+            this.version = version;
+            this.coffee = coffee;
+            this.sugar = sugar;
+            this.creams = creams;
+            this.cups = cups;
+            this.title = title;
+        }
+
+        /* Accessors */
+        public Op getOp() {
+            return this.op;
+        }
+
+        public long getVersion() {
+            return this.version;
+        }
+
+        public int getCoffee() {
+            return this.coffee;
+        }
+
+        public int getSugar() {
+            return this.sugar;
+        }
+
+        public int getCreams() {
+            return this.creams;
+        }
+
+        public int getCups() {
+            return this.cups;
+        }
+
+        public String getTitle() {
+            return this.title;
+        }
+    }
+
+    /**
+     * Receives each record as a Journal is replayed.
+     */
+    public interface Replayer {
+        void apply(Record record);
+    }
+
+    private static final int RECORD_HEADER = 8; // Length and CRC
+    private static final int PAYLOAD_FIXED = 1 + 8 + 4 * 4; // Op, version, four amounts
+    private static final long COMMIT_INTERVAL_MILLIS = 1;
+    private static final int STRIPES = 256;
+
+    private final Path path;
+    private final boolean syncCommit;
+    private final Object writeLock = new Object(); // Guards channel
+    private final Object durableLock = new Object(); // Waiters for durability
+    private final Object[] stripes;
+    private final Thread committer;
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024); // Guarded by this
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024); // Guarded by this
+    private long appended; // Guarded by this; records appended so far
+    private volatile long durable; // Records forced to disk so far
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    /**
+     * Opens a journal for appending, creating the file if needed, and starts its committer thread.
+     *
+     * @param path       the journal file
+     * @param syncCommit whether each append waits until its record has been forced to disk
+     * @throws IOException if the file cannot be opened
+     */
+    public Journal(Path path, boolean syncCommit) throws IOException {
+        this.path = path;
+        this.syncCommit = syncCommit;
+        this.channel = openForAppend(path);
+        this.stripes = new Object[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            this.stripes[i] = new Object();
+        }
+        this.committer = new Thread(this::commitLoop, "journal-committer-" + path.getFileName());
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    private static FileChannel openForAppend(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+
+    /**
+     * Gets a lock to hold while changing a keyed piece of state and appending its record,
+     * so records for the same key reach the journal in the order the changes were made.
+     *
+     * @param key the key being changed, such as a title
+     * @return the lock object for that key
+     */
+    Object lockFor(String key) {
+        return this.stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    /**
+     * Appends a record. Returns once the record is buffered, or once it is on disk if the journal uses syncCommit.
+     *
+     * @param op      the kind of change
+     * @param version the version of the state the change produced, or 0 if the state is not versioned
+     * @param title   the title the change is about, or null
+     * @param coffee  ounces of coffee, for inventory changes
+     * @param sugar   sugar packets, for inventory changes
+     * @param creams  cream portions, for inventory changes
+     * @param cups    cups, for inventory changes
+     * @return the sequence number of the record, which can be passed to awaitDurable
+     * @throws RuntimeException if the journal is closed or a previous write failed
+     */
+    public long append(Op op, long version, String title, int coffee, int sugar, int creams, int cups) {
+        byte[] titleBytes = title == null ? new byte[0] : title.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_FIXED + titleBytes.length);
+        payload.put((byte) op.ordinal()).putLong(version)
+               .putInt(coffee).putInt(sugar).putInt(creams).putInt(cups).put(titleBytes);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+
+        long seq;
+        synchronized (this) {
+            checkOpen();
+            int needed = RECORD_HEADER + payload.capacity();
+            if (this.buffer.remaining() < needed) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(this.buffer.capacity() * 2, this.buffer.position() + needed));
+                this.buffer.flip();
+                bigger.put(this.buffer);
+                this.buffer = bigger;
+            }
+            this.buffer.putInt(payload.capacity()).putInt((int) crc.getValue()).put(payload.array());
+            seq = ++this.appended;
+            if (this.syncCommit) {
+                notify(); // Wake the committer rather than waiting out its interval
+            }
+        }
+        if (this.syncCommit) {
+            awaitDurable(seq);
+        }
+        return seq;
+    }
+
+    /**
+     * Waits until the record with the given sequence number, and every record before it, is on disk.
+     *
+     * @param seq a sequence number returned by append
+     * @throws RuntimeException if the journal fails or closes before the record is written
+     */
+    public void awaitDurable(long seq) {
+        synchronized (this.durableLock) {
+            while (this.durable < seq) {
+                checkOpen();
+                try {
+                    this.durableLock.wait(COMMIT_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for the journal.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until everything appended so far is on disk.
+     *
+     * @return the journal file's length once those records are written; every record before it is durable
+     */
+    public long sync() {
+        long seq;
+        synchronized (this) {
+            seq = this.appended;
+            notify();
+        }
+        awaitDurable(seq);
+        synchronized (this.writeLock) {
+            try {
+                return this.channel.position();
+            } catch (IOException e) {
+                throw new RuntimeException("Journal write failed.", e);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the journal without the records before a position that a checkpoint has made unnecessary.
+     * Records from the position on are always kept. Appends carry on during compaction and are written afterwards.
+     *
+     * @param position  a file position returned by sync
+     * @param keepEarly which records before the position must still be kept
+     * @throws IOException if the journal cannot be rewritten
+     */
+    public void compact(long position, Predicate<Record> keepEarly) throws IOException {
+        synchronized (this.writeLock) {
+            checkOpen();
+            Path tmp = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING);
+                 FileChannel reader = FileChannel.open(this.path, StandardOpenOption.READ)) {
+                long size = this.channel.size();
+                if (size > 0) {
+                    MappedByteBuffer in = reader.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                    int end = scan(in, (int) position, (record, start, length) -> {
+                        if (keepEarly.test(record)) {
+                            ByteBuffer bytes = in.duplicate();
+                            bytes.position(start).limit(start + length);
+                            writeFully(out, bytes);
+                        }
+                    });
+                    ByteBuffer tail = in.duplicate();
+                    tail.position(end);
+                    writeFully(out, tail);
+                }
+                out.force(true);
+            }
+            Files.move(tmp, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.channel.close();
+            this.channel = openForAppend(this.path);
+        }
+    }
+
+    /**
+     * Reads every intact record in a journal file, in order.
+     *
+     * @param path     the journal file; a missing file has no records
+     * @param replayer receives each record
+     * @return the number of records replayed
+     * @throws IOException if the file cannot be read
+     */
+    public static int replay(Path path, Replayer replayer) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() == 0) {
+                return 0;
+            }
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int[] count = new int[1];
+            scan(in, in.capacity(), (record, start, length) -> {
+                replayer.apply(record);
+                count[0]++;
+            });
+            return count[0];
+        }
+    }
+
+    /**
+     * Finishes writing everything appended and stops the committer thread.
+     */
+    @Override
+    public void close() {
+        if (!this.closed) {
+            sync();
+            this.closed = true;
+            synchronized (this) {
+                notify();
+            }
+            try {
+                this.committer.join();
+                synchronized (this.writeLock) {
+                    this.channel.close();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                throw new RuntimeException("Journal close failed.", e);
+            }
+        }
+    }
+
+    private interface RecordVisitor {
+        void visit(Record record, int start, int length) throws IOException;
+    }
+
+    // Visits intact records starting before limit and returns the position just after the last one visited
+    private static int scan(ByteBuffer in, int limit, RecordVisitor visitor) throws IOException {
+        int pos = 0;
+        CRC32 crc = new CRC32();
+        Op[] ops = Op.values();
+        while (pos < limit && pos + RECORD_HEADER <= in.capacity()) {
+            int length = in.getInt(pos);
+            int expected = in.getInt(pos + 4);
+            if (length < PAYLOAD_FIXED || pos + RECORD_HEADER + length > in.capacity()) {
+                break; // Torn write at the end of the journal
+            }
+            byte[] payload = new byte[length];
+            in.get(pos + RECORD_HEADER, payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != expected || payload[0] < 0 || payload[0] >= ops.length) {
+                break; // Corrupt record; nothing after it can be trusted
+            }
+            ByteBuffer p = ByteBuffer.wrap(payload);
+            Op op = ops[p.get()];
+            long version = p.getLong();
+            int coffee = p.getInt();
+            int sugar = p.getInt();
+            int creams = p.getInt();
+            int cups = p.getInt();
+            String title = p.hasRemaining()
+                ? new String(payload, PAYLOAD_FIXED, length - PAYLOAD_FIXED, StandardCharsets.UTF_8) : null;
+            visitor.visit(new Record(op, version, coffee, sugar, creams, cups, title), pos, RECORD_HEADER + length);
+            pos += RECORD_HEADER + length;
+        }
+        return pos;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+    }
+
+    private void checkOpen() {
+        if (this.failure != null) {
+            throw new RuntimeException("Journal write failed.", this.failure);
+        }
+        if (this.closed) {
+            throw new RuntimeException("Journal is closed.");
+        }
+    }
+
+    private void commitLoop() {
+        while (true) {
+            ByteBuffer toWrite;
+            long upTo;
+            synchronized (this) {
+                if (this.buffer.position() == 0) {
+                    if (this.closed) {
+                        return;
+                    }
+                    try {
+                        wait(COMMIT_INTERVAL_MILLIS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    continue;
+                }
+                toWrite = this.buffer;
+                this.buffer = this.spare;
+                upTo = this.appended;
+            }
+            try {
+                synchronized (this.writeLock) {
+                    toWrite.flip();
+                    writeFully(this.channel, toWrite);
+                    this.channel.force(false);
+                }
+            } catch (IOException e) {
+                this.failure = e;
+                synchronized (this.durableLock) {
+                    this.durableLock.notifyAll();
+                }
+                return;
+            }
+            toWrite.clear();
+            synchronized (this) {
+                this.spare = toWrite;
+            }
+            synchronized (this.durableLock) {
+                this.durable = upTo;
+                this.durableLock.notifyAll();
+            }
+        }
+    }
+}
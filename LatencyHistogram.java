@@ -0,0 +1,103 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A LatencyHistogram counts how long operations take, in power-of-two buckets of nanoseconds.
+ * Recording is lock-free: it picks a stripe of buckets by thread and does one atomic increment,
+ * so threads recording at the same time rarely touch the same memory.
+ * Percentiles are approximate, reported as the upper bound of the bucket they fall in.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 48; // Bucket i counts latencies below 2^i ns; 2^47 ns is over a day
+    private static final int STRIPES = Math.min(8, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+    private static final int STRIDE = BUCKETS + 16; // Pads stripes apart so they do not share cache lines
+
+    private final AtomicLongArray buckets = new AtomicLongArray(STRIPES * STRIDE);
+    private final AtomicLongArray sums = new AtomicLongArray(STRIPES * 16); // Total nanoseconds per stripe, padded
+
+    /**
+     * Records one operation's latency.
+     *
+     * @param nanos how long the operation took, in nanoseconds
+     */
+    public void record(long nanos) {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(nanos, 0)));
+        this.buckets.incrementAndGet(stripe * STRIDE + bucket);
+        this.sums.addAndGet(stripe * 16, nanos);
+    }
+
+    /**
+     * Gets the number of operations recorded.
+     *
+     * @return the number of operations
+     */
+    public long count() {
+        long total = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            total += bucketCount(bucket);
+        }
+        return total;
+    }
+
+    /**
+     * Gets the mean latency of the recorded operations.
+     *
+     * @return the mean latency in nanoseconds, or 0 if nothing was recorded
+     */
+    public double mean() {
+        long count = count();
+        long sum = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            sum += this.sums.get(stripe * 16);
+        }
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Gets an approximate percentile of the recorded latencies.
+     *
+     * @param percentile the percentile to find, from 0 to 100
+     * @return the upper bound, in nanoseconds, of the bucket holding that percentile, or 0 if nothing was recorded
+     */
+    public long percentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts[bucket] = bucketCount(bucket);
+            total += counts[bucket];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank && counts[bucket] > 0) {
+                return 1L << bucket;
+            }
+        }
+        return 1L << (BUCKETS - 1);
+    }
+
+    /**
+     * Clears every recorded latency.
+     */
+    public void reset() {
+        for (int i = 0; i < this.buckets.length(); i++) {
+            this.buckets.set(i, 0);
+        }
+        for (int i = 0; i < this.sums.length(); i++) {
+            this.sums.set(i, 0);
+        }
+    }
+
+    private long bucketCount(int bucket) {
+        long total = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            total += this.buckets.get(stripe * STRIDE + bucket);
+        }
+        return total;
+    }
+}
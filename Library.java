@@ -1,16 +1,52 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * A Library contains a collection of books where each book title is associated with its availability status.
  * The Library allows adding, removing, checking out, and returning books, as well as checking book availability.
+ * The collection is a Catalog: lookups never block, and checking out or returning a book is a single atomic compare-and-set,
+ * so two patrons can never both check out the same copy. Large collections can use a compact catalog that keeps availability
+ * in a bitmap, for a fraction of the memory per title.
+ * Patrons can place a hold on a borrowed title instead of asking again and again: holds on each title are served first come, first served,
+ * and a returned book goes straight to the next patron waiting for it.
  */
 public class Library extends Building {
 
-    private Hashtable<String, Boolean> collection;
+    private static final int TITLE_LOCKS = 64;
+
+    private Catalog collection; // Each title and whether it is available, with running counts of both
+    private volatile TitleIndex index; // Prefix and keyword search, built on the first search and then kept up to date
+    private volatile boolean indexReady; // Whether index holds every title, not just those added since it was created
+    private volatile Journal journal; // Records every change to the collection when attached, or null
+    private final Object[] titleLocks = new Object[TITLE_LOCKS]; // Striped by title; see insertTitle
+    private final ConcurrentHashMap<String, Holds> holds = new ConcurrentHashMap<>(); // Waiting patrons, only for titles that have any
     private boolean hasElevator;
 
+    /**
+     * The patrons waiting for one title, in the order they placed their holds. Each title's queue has its own lock.
+     */
+    private static final class Holds {
+        final ArrayDeque<CompletableFuture<String>> waiting = new ArrayDeque<>();
+        boolean retired; // Set once the queue has emptied and left the holds map; a new one must be made
+
+        // Drops holds whose patrons have given up waiting, and reports whether anyone is still waiting
+        boolean hasWaiting() {
+            while (!this.waiting.isEmpty() && this.waiting.peek().isDone()) {
+                this.waiting.poll();
+            }
+            return !this.waiting.isEmpty();
+        }
+    }
+
     /**
      * Constructs a new Library object with the specified attributes.
      *
@@ -20,10 +56,29 @@ public class Library extends Building {
      * @param hasElevator whether the library has an elevator
      */
     public Library(String name, String address, int nFloors, boolean hasElevator) {
+        this(name, address, nFloors, hasElevator, false);
+    }
+
+    /**
+     * Constructs a new Library object, choosing how its collection is stored.
+     * A compact collection gives each title a number and keeps availability in a bitmap, which takes a fraction of the memory
+     * of the default map for catalogs with millions of titles, at the cost of briefly locking out other changes whenever
+     * a title it has never held before is added.
+     *
+     * @param name        the name of the library
+     * @param address     the address of the library
+     * @param nFloors     the number of floors in the library
+     * @param hasElevator whether the library has an elevator
+     * @param compact     whether to store the collection as a bitmap instead of a map
+     */
+    public Library(String name, String address, int nFloors, boolean hasElevator, boolean compact) {
         super(name, address, nFloors);
-        this.collection = new Hashtable<>();
+        for (int i = 0; i < TITLE_LOCKS; i++) {
+            this.titleLocks[i] = new Object();
+        }
+        this.collection = compact ? new BitmapCatalog() : new HashCatalog(16);
         this.hasElevator = hasElevator;
-        System.out.println("You have built a library!");
+        publish(BuildingEvent.Type.BUILT, "library", 0);
     }
 
     /**
@@ -36,6 +91,213 @@ public class Library extends Building {
         this(name, address, 1, false); // Default to 1 floor, no elevator
     }
 
+    /**
+     * Builds a library whose collection is served from a catalog snapshot written by saveSnapshot.
+     * Nothing is loaded up front: lookups read the memory-mapped file and decode only the titles they touch,
+     * and the collection is copied out of the snapshot, in parallel and without the duplicate checks of addTitle,
+     * on the first change. The search index is not built until the first search.
+     *
+     * @param name        the name of the library
+     * @param address     the address of the library
+     * @param nFloors     the number of floors in the library
+     * @param hasElevator whether the library has an elevator
+     * @param snapshot    the snapshot file to load
+     * @return the new library
+     * @throws IOException if the snapshot cannot be read
+     */
+    public static Library fromSnapshot(String name, String address, int nFloors, boolean hasElevator, Path snapshot) throws IOException {
+        return fromSnapshot(name, address, nFloors, hasElevator, false, snapshot);
+    }
+
+    /**
+     * Builds a library whose collection is loaded from a catalog snapshot, choosing how the collection is stored.
+     *
+     * @param name        the name of the library
+     * @param address     the address of the library
+     * @param nFloors     the number of floors in the library
+     * @param hasElevator whether the library has an elevator
+     * @param compact     whether to store the collection as a bitmap instead of a map
+     * @param snapshot    the snapshot file to load
+     * @return the new library
+     * @throws IOException if the snapshot cannot be read
+     */
+    public static Library fromSnapshot(String name, String address, int nFloors, boolean hasElevator, boolean compact,
+                                       Path snapshot) throws IOException {
+        Library library = new Library(name, address, nFloors, hasElevator, compact);
+        library.collection = new SnapshotCatalog(CatalogSnapshot.open(snapshot), compact);
+        return library;
+    }
+
+    /**
+     * Saves the collection, with each title's availability, to a catalog snapshot file.
+     *
+     * @param snapshot the file to write, replacing any existing file
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void saveSnapshot(Path snapshot) throws IOException {
+        CatalogSnapshot.write(this.collection, snapshot);
+    }
+
+    /**
+     * Rebuilds a library after a restart from its latest snapshot plus every change journaled since,
+     * then keeps journaling to the same file.
+     *
+     * @param name        the name of the library
+     * @param address     the address of the library
+     * @param nFloors     the number of floors in the library
+     * @param hasElevator whether the library has an elevator
+     * @param snapshot    the snapshot written by the last checkpoint; a missing file means an empty collection
+     * @param journal     the journal file
+     * @return the recovered library, with the journal attached
+     * @throws IOException if the snapshot or journal cannot be read
+     */
+    public static Library recover(String name, String address, int nFloors, boolean hasElevator,
+                                  Path snapshot, Path journal) throws IOException {
+        Library library = Files.exists(snapshot)
+            ? fromSnapshot(name, address, nFloors, hasElevator, snapshot)
+            : new Library(name, address, nFloors, hasElevator);
+        Journal.replay(journal, library::replay);
+        library.journal = new Journal(journal, false);
+        return library;
+    }
+
+    /**
+     * Starts recording every change to the collection in a journal.
+     * Take a checkpoint afterwards so the journal has a snapshot to be replayed on top of.
+     *
+     * @param journal the journal to write to
+     */
+    public void attachJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Saves a snapshot of the collection and drops the journaled changes it already includes.
+     * The snapshot is written to a temporary file and moved into place, so a crash never leaves a partial snapshot.
+     * Other operations can carry on while this runs; changes journaled while the snapshot is written are kept,
+     * and replaying them on top of the snapshot gives the same result.
+     *
+     * @param snapshot the snapshot file to replace
+     * @throws IOException if the snapshot or journal cannot be written
+     * @throws RuntimeException if no journal is attached
+     */
+    public void checkpoint(Path snapshot) throws IOException {
+        Journal j = this.journal;
+        if (j == null) {
+            throw new RuntimeException("No journal is attached to " + this.name + ".");
+        }
+        // Every change journaled before this position is already in the collection, and the snapshot copies every title
+        // the collection holds when copying starts, so the snapshot includes all of those records and they can be dropped
+        long position = j.sync();
+        Path tmp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        saveSnapshot(tmp);
+        Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        j.compact(position, record -> false);
+    }
+
+    // Applies a journaled change. Each change sets a title's final state, so replaying one twice is harmless.
+    private void replay(Journal.Record record) {
+        String title = record.getTitle();
+        switch (record.getOp()) {
+            case ADD_TITLE:
+                if (this.collection.add(title, true)) {
+                    indexAdd(title);
+                }
+                break;
+            case REMOVE_TITLE:
+                if (this.collection.remove(title) != null) {
+                    indexRemove(title);
+                }
+                break;
+            case CHECK_OUT:
+                this.collection.checkOut(title);
+                break;
+            case RETURN:
+                this.collection.checkIn(title);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /*
+     * Each change to the collection is a single atomic catalog operation. Adding or removing a title also changes the
+     * search index, so both are done while holding the title's lock; otherwise a remove that finished its index update
+     * after a concurrent add could leave the title in the collection but missing from the index for good.
+     * When a journal is attached, every change and its journal record are made under the title's lock,
+     * so each title's records are in order. Checking out and returning need no lock without a journal.
+     */
+
+    private Object lockFor(String title) {
+        return this.titleLocks[(title.hashCode() & 0x7fffffff) % TITLE_LOCKS];
+    }
+
+    private boolean insertTitle(String title) {
+        synchronized (lockFor(title)) {
+            if (!this.collection.add(title, true)) {
+                return false;
+            }
+            Journal j = this.journal;
+            if (j != null) {
+                j.append(Journal.Op.ADD_TITLE, 0, title, 0, 0, 0, 0);
+            }
+            indexAdd(title);
+        }
+        return true;
+    }
+
+    private boolean deleteTitle(String title) {
+        synchronized (lockFor(title)) {
+            if (this.collection.remove(title) == null) {
+                return false;
+            }
+            Journal j = this.journal;
+            if (j != null) {
+                j.append(Journal.Op.REMOVE_TITLE, 0, title, 0, 0, 0, 0);
+            }
+            indexRemove(title);
+        }
+        return true;
+    }
+
+    private boolean checkOutTitle(String title) {
+        Journal j = this.journal;
+        if (j == null) {
+            if (!this.collection.checkOut(title)) {
+                return false;
+            }
+        } else {
+            synchronized (lockFor(title)) {
+                if (!this.collection.checkOut(title)) {
+                    return false;
+                }
+                j.append(Journal.Op.CHECK_OUT, 0, title, 0, 0, 0, 0);
+            }
+        }
+        publish(BuildingEvent.Type.CHECKED_OUT, title, 0);
+        return true;
+    }
+
+    private boolean returnTitle(String title) {
+        Journal j = this.journal;
+        Boolean previous;
+        if (j == null) {
+            previous = this.collection.checkIn(title);
+        } else {
+            synchronized (lockFor(title)) {
+                previous = this.collection.checkIn(title);
+                if (previous != null) {
+                    j.append(Journal.Op.RETURN, 0, title, 0, 0, 0, 0);
+                }
+            }
+        }
+        if (previous == null) {
+            return false;
+        }
+        publish(BuildingEvent.Type.RETURNED, title, 0);
+        return true;
+    }
+
     /**
      * Displays available options for actions that can be performed in the library.
      */
@@ -46,19 +308,42 @@ public class Library extends Building {
     }
 
     /**
-     * Moves to the specified floor in the library. If the library has an elevator,
+     * Moves a visitor to the specified floor in the library, reporting why not instead of throwing. If the library has an elevator,
      * it allows non-adjacent floor access.
      *
+     * @param visitor  the visitor moving
      * @param floorNum the floor number to navigate to
-     * @throws RuntimeException if the floor transition is not valid without an elevator
+     * @return OK, NO_ELEVATOR if the floor transition is not valid without an elevator, or another reason the move failed
      */
     @Override
-    public void goToFloor(int floorNum) {
-        if (hasElevator || Math.abs(this.activeFloor - floorNum) == 1) {
-            super.goToFloor(floorNum);
-        } else {
-            throw new RuntimeException("This library does not have an elevator. You can only move to adjacent floors.");
+    protected Status tryGoToFloor(Visitor visitor, int floorNum) {
+        // Only a visitor inside this building has a floor to measure from; anyone else gets the reason from Building
+        if (!hasElevator && checkVisitor(visitor) == Status.OK && Math.abs(visitor.getFloor() - floorNum) != 1) {
+            return Status.NO_ELEVATOR;
+        }
+        return super.tryGoToFloor(visitor, floorNum);
+    }
+
+    @Override
+    protected RuntimeException failure(Status status, Visitor visitor, int floorNum, String notInside) {
+        if (status == Status.NO_ELEVATOR) {
+            return new RuntimeException("This library does not have an elevator. You can only move to adjacent floors.");
+        }
+        return super.failure(status, visitor, floorNum, notInside);
+    }
+
+    /**
+     * Creates a simulation of this library's elevator, for working out how many riders it can serve and how long they wait.
+     * The car holds 8 riders, takes 2 seconds per floor, and stops for 8 seconds to let riders on and off.
+     *
+     * @return a new elevator simulation with no requests queued
+     * @throws RuntimeException if the library does not have an elevator
+     */
+    public Elevator elevator() {
+        if (!hasElevator) {
+            throw new RuntimeException("This library does not have an elevator.");
         }
+        return new Elevator(this.nFloors, 8, 2.0, 8.0);
     }
 
     /**
@@ -68,13 +353,21 @@ public class Library extends Building {
      * @throws RuntimeException if the title already exists in the collection
      */
     public void addTitle(String title) {
-        if (this.containsTitle(title)) {
+        if (!insertTitle(title)) {
             throw new RuntimeException("Title already in collection");
-        } else {
-            this.collection.put(title, true);
         }
     }
 
+    /**
+     * Adds a book title to the library collection, reporting a title that is already there instead of throwing.
+     *
+     * @param title the title of the book to add
+     * @return OK, or ALREADY_PRESENT if the title already exists in the collection
+     */
+    public Status tryAddTitle(String title) {
+        return insertTitle(title) ? Status.OK : Status.ALREADY_PRESENT;
+    }
+
     /**
      * Overloaded method to add multiple book titles to the library collection at once.
      *
@@ -82,12 +375,35 @@ public class Library extends Building {
      */
     public void addTitle(ArrayList<String> titles) {
         for (String title : titles) {
-            if (!this.collection.containsKey(title)) {
-                this.collection.put(title, true);
-            }
+            insertTitle(title);
         }
     }
 
+    /**
+     * Adds every title in a file, one title per line, streaming the file rather than loading it all at once.
+     * Lines are read through a channel in chunks and inserted in parallel batches; titles already in the collection,
+     * or repeated in the file, are skipped. Blank lines are ignored.
+     *
+     * @param file the UTF-8 file of titles
+     * @return a report of how many titles were added and skipped, and how fast
+     * @throws IOException if the file cannot be read
+     */
+    public IngestReport ingest(Path file) throws IOException {
+        return ingest(file, null);
+    }
+
+    /**
+     * Adds every title in a file, one title per line, reporting progress as it goes.
+     *
+     * @param file     the UTF-8 file of titles
+     * @param progress called with a running report as each batch of titles is handed out, and with the final report
+     * @return a report of how many titles were added and skipped, and how fast
+     * @throws IOException if the file cannot be read
+     */
+    public IngestReport ingest(Path file, Consumer<IngestReport> progress) throws IOException {
+        return TitleIngest.run(file, this::insertTitle, progress);
+    }
+
     /**
      * Removes a book title from the library collection if it is present.
      *
@@ -96,28 +412,71 @@ public class Library extends Building {
      * @throws RuntimeException if the title is not in the collection
      */
     public String removeTitle(String title) {
-        if (!this.containsTitle(title)) {
+        if (tryRemoveTitle(title) != Status.OK) {
             throw new RuntimeException("Title not in collection. Can't be removed");
-        } else {
-            this.collection.remove(title);
-            return title;
         }
+        return title;
+    }
+
+    /**
+     * Removes a book title from the library collection, reporting a title that is not there instead of throwing.
+     * Anyone with a hold on the title is told it was removed.
+     *
+     * @param title the title of the book to remove
+     * @return OK, or NOT_FOUND if the title is not in the collection
+     */
+    public Status tryRemoveTitle(String title) {
+        if (!deleteTitle(title)) {
+            return Status.NOT_FOUND;
+        }
+        Holds queue = this.holds.remove(title);
+        if (queue != null) {
+            ArrayList<CompletableFuture<String>> waiting;
+            synchronized (queue) {
+                queue.retired = true;
+                waiting = new ArrayList<>(queue.waiting);
+                queue.waiting.clear();
+            }
+            for (CompletableFuture<String> hold : waiting) {
+                hold.completeExceptionally(new RuntimeException("Title was removed from the library"));
+            }
+        }
+        return Status.OK;
     }
 
     /**
      * Checks out a book by setting its availability status to false if the book is available.
+     * The availability check and the update happen in one atomic step.
      *
      * @param title the title of the book to check out
-     * @throws RuntimeException if the title is not available (already checked out)
+     * @throws RuntimeException if the title is not in the collection or not available (already checked out)
      */
     public void checkOut(String title) {
-        if (isAvailable(title)) {
-            this.collection.replace(title, false);
-        } else {
+        Status status = tryCheckOut(title);
+        if (status == Status.NOT_FOUND) {
+            throw new RuntimeException("Title is not available in the library");
+        }
+        if (status == Status.UNAVAILABLE) {
             throw new RuntimeException("Title has been borrowed and is not available to be checked out.");
         }
     }
 
+    /**
+     * Checks out a book if it is available, reporting why not instead of throwing.
+     * A failed checkout costs about as much as a successful one, so this suits callers that try many titles in turn.
+     *
+     * @param title the title of the book to check out
+     * @return OK, NOT_FOUND if the title is not in the collection, or UNAVAILABLE if it is already checked out
+     */
+    public Status tryCheckOut(String title) {
+        long start = System.nanoTime();
+        if (!checkOutTitle(title)) {
+            return containsTitle(title) ? Status.UNAVAILABLE : Status.NOT_FOUND;
+        }
+        metrics().record(BuildingMetrics.Op.CHECK_OUT, start);
+        return Status.OK;
+    }
+
     /**
      * Returns a book by setting its availability status to true if it is in the collection.
      *
@@ -125,10 +484,143 @@ public class Library extends Building {
      * @throws RuntimeException if the title is not in the collection
      */
     public void returnBook(String title) {
-        if (!this.collection.containsKey(title)) {
+        if (tryReturnBook(title) != Status.OK) {
             throw new RuntimeException("Title wasn't checked out from this library. Wrong library perhaps?");
+        }
+    }
+
+    /**
+     * Returns a book, reporting a title this library does not have instead of throwing.
+     * If patrons are waiting for the title, it goes straight to the next one.
+     *
+     * @param title the title of the book to return
+     * @return OK, or NOT_FOUND if the title is not in the collection
+     */
+    public Status tryReturnBook(String title) {
+        long start = System.nanoTime();
+        Holds queue = this.holds.get(title);
+        if (queue == null) {
+            if (!returnTitle(title)) {
+                return Status.NOT_FOUND;
+            }
+            // A hold may have been placed while the book was on its way back
+            queue = this.holds.get(title);
+            if (queue != null) {
+                List<CompletableFuture<String>> served;
+                synchronized (queue) {
+                    served = serve(title, queue, null);
+                }
+                complete(title, served);
+            }
         } else {
-            this.collection.replace(title, true);
+            CompletableFuture<String> next = null;
+            List<CompletableFuture<String>> served = null;
+            synchronized (queue) {
+                if (!queue.retired && queue.hasWaiting() && Boolean.FALSE.equals(this.collection.get(title))) {
+                    // Hand the book straight to the next patron: it stays checked out, so the collection does not change
+                    next = queue.waiting.poll();
+                    retireIfEmpty(title, queue);
+                } else if (!returnTitle(title)) {
+                    return Status.NOT_FOUND;
+                } else {
+                    served = serve(title, queue, null);
+                }
+            }
+            if (next != null) {
+                publish(BuildingEvent.Type.RETURNED, title, 0);
+                if (!next.complete(title)) {
+                    return tryReturnBook(title); // The patron gave up just as the book arrived; pass it on
+                }
+                publish(BuildingEvent.Type.CHECKED_OUT, title, 0);
+            }
+            complete(title, served);
+        }
+        metrics().record(BuildingMetrics.Op.RETURN_BOOK, start);
+        return Status.OK;
+    }
+
+    /**
+     * Places a hold on a title. If the title is available and nobody is waiting for it, it is checked out at once;
+     * otherwise the hold waits its turn and the title is checked out to the patron when the patrons ahead have had it.
+     * A patron can block on the result with get(), or register a callback with thenAccept() and carry on.
+     * Cancelling the result gives up the hold.
+     *
+     * @param title the title to place a hold on
+     * @return a future that completes with the title once it has been checked out to this patron,
+     *         or completes exceptionally if the title is removed from the library first
+     * @throws RuntimeException if the title is not in the collection
+     */
+    public CompletableFuture<String> placeHold(String title) {
+        if (!containsTitle(title)) {
+            throw new RuntimeException("Title is not available in the library");
+        }
+        CompletableFuture<String> hold = new CompletableFuture<>();
+        while (true) {
+            Holds queue = this.holds.computeIfAbsent(title, t -> new Holds());
+            List<CompletableFuture<String>> served;
+            synchronized (queue) {
+                if (queue.retired) {
+                    continue; // Emptied and dropped while we were getting it; make a fresh one
+                }
+                served = serve(title, queue, hold);
+            }
+            complete(title, served);
+            return hold;
+        }
+    }
+
+    /**
+     * Gets the number of patrons waiting for a title.
+     *
+     * @param title the title to look up
+     * @return the number of holds on the title that have not been served or cancelled
+     */
+    public int nHolds(String title) {
+        Holds queue = this.holds.get(title);
+        if (queue == null) {
+            return 0;
+        }
+        synchronized (queue) {
+            queue.hasWaiting();
+            return queue.waiting.size();
+        }
+    }
+
+    // Queues a new hold, if any, then checks out the title to waiting patrons for as long as it is available.
+    // Must hold the queue's lock; returns the holds that were served, to be completed once the lock is released.
+    private List<CompletableFuture<String>> serve(String title, Holds queue, CompletableFuture<String> hold) {
+        if (queue.retired) {
+            return null;
+        }
+        if (hold != null) {
+            queue.waiting.add(hold);
+        }
+        List<CompletableFuture<String>> served = null;
+        while (queue.hasWaiting() && checkOutTitle(title)) {
+            if (served == null) {
+                served = new ArrayList<>(1);
+            }
+            served.add(queue.waiting.poll());
+        }
+        retireIfEmpty(title, queue);
+        return served;
+    }
+
+    private void retireIfEmpty(String title, Holds queue) {
+        if (queue.waiting.isEmpty()) {
+            queue.retired = true;
+            this.holds.remove(title, queue);
+        }
+    }
+
+    // Gives each served patron the title, returning it again for anyone who cancelled in the meantime
+    private void complete(String title, List<CompletableFuture<String>> served) {
+        if (served != null) {
+            for (CompletableFuture<String> hold : served) {
+                if (!hold.complete(title)) {
+                    tryReturnBook(title);
+                }
+            }
         }
     }
 
@@ -139,7 +631,53 @@ public class Library extends Building {
      * @return true if the title exists in the collection; false otherwise
      */
     public boolean containsTitle(String title) {
-        return this.collection.containsKey(title);
+        return this.collection.get(title) != null;
+    }
+
+    /**
+     * Gets the number of titles in the collection.
+     *
+     * @return the number of titles
+     */
+    public int nTitles() {
+        return this.collection.size();
+    }
+
+    /**
+     * Gets the number of titles currently available to be checked out. This is a running count, not a scan.
+     *
+     * @return the number of available titles
+     */
+    public int nAvailable() {
+        return (int) this.collection.nAvailable();
+    }
+
+    /**
+     * Gets the number of titles currently checked out. This is a running count, not a scan.
+     *
+     * @return the number of checked-out titles
+     */
+    public int nCheckedOut() {
+        return (int) this.collection.nCheckedOut();
+    }
+
+    /**
+     * Passes every title currently available to the action, in no particular order.
+     * With a compact collection this scans the availability bitmap 32 titles at a time.
+     * The action may use the library, but titles checked out or returned during the scan may or may not be passed to it.
+     *
+     * @param action called with each available title
+     */
+    public void forEachAvailable(Consumer<String> action) {
+        this.collection.forEachAvailable(action);
+    }
+
+    @Override
+    protected void gauges(Map<String, Long> gauges) {
+        super.gauges(gauges);
+        gauges.put("titles", (long) nTitles());
+        gauges.put("availableTitles", (long) nAvailable());
+        gauges.put("checkedOutTitles", (long) nCheckedOut());
     }
 
     /**
@@ -150,13 +688,85 @@ public class Library extends Building {
      * @throws RuntimeException if the title is not in the collection
      */
     public boolean isAvailable(String title) {
-        if (!containsTitle(title)) {
+        Boolean available = this.collection.get(title);
+        if (available == null) {
             throw new RuntimeException("Title is not available in the library");
-        } else {
-            return this.collection.get(title);
+        }
+        return available;
+    }
+
+    /**
+     * Checks if a book is available for checkout, reporting a title that is not in the collection instead of throwing.
+     *
+     * @param title the title of the book to check
+     * @return OK if the book is available, UNAVAILABLE if it is checked out, or NOT_FOUND if it is not in the collection
+     */
+    public Status availability(String title) {
+        Boolean available = this.collection.get(title);
+        return available == null ? Status.NOT_FOUND : available ? Status.OK : Status.UNAVAILABLE;
+    }
+
+    /**
+     * Finds titles in the collection that start with the given prefix, ignoring case, in alphabetical order.
+     *
+     * @param prefix        the beginning of the title to look for
+     * @param page          which page of results to return, starting from 0
+     * @param pageSize      the maximum number of titles per page
+     * @param onlyAvailable whether to leave out titles that are checked out
+     * @return the matching titles on the requested page
+     */
+    public List<String> searchByPrefix(String prefix, int page, int pageSize, boolean onlyAvailable) {
+        return searchIndex().prefix(prefix, page * pageSize, pageSize, title -> this.matches(title, onlyAvailable));
+    }
+
+    /**
+     * Finds titles in the collection that contain every word of the query, ignoring case, in alphabetical order.
+     *
+     * @param keywords      one or more words to look for
+     * @param page          which page of results to return, starting from 0
+     * @param pageSize      the maximum number of titles per page
+     * @param onlyAvailable whether to leave out titles that are checked out
+     * @return the matching titles on the requested page
+     */
+    public List<String> searchByKeyword(String keywords, int page, int pageSize, boolean onlyAvailable) {
+        return searchIndex().keyword(keywords, page * pageSize, pageSize, title -> this.matches(title, onlyAvailable));
+    }
+
+    private void indexAdd(String title) {
+        TitleIndex current = this.index;
+        if (current != null) {
+            current.add(title);
+        }
+    }
+
+    private void indexRemove(String title) {
+        TitleIndex current = this.index;
+        if (current != null) {
+            current.remove(title);
         }
     }
 
+    // Builds the index on first use. It is published before it is filled so titles added meanwhile are not missed.
+    private TitleIndex searchIndex() {
+        if (!this.indexReady) {
+            synchronized (this) {
+                if (!this.indexReady) {
+                    TitleIndex built = new TitleIndex();
+                    this.index = built;
+                    this.collection.forEach((title, available) -> built.add(title));
+                    this.indexReady = true;
+                }
+            }
+        }
+        return this.index;
+    }
+
+    // The index can briefly lag the collection during concurrent updates, so confirm against the collection itself
+    private boolean matches(String title, boolean onlyAvailable) {
+        Boolean available = this.collection.get(title);
+        return available != null && (available || !onlyAvailable);
+    }
+
     /**
      * Prints the entire collection of books in a table format showing title and availability.
      */
@@ -166,9 +776,7 @@ public class Library extends Building {
         System.out.println("---------------------------------------- ----------");
 
         // Print each book-availability status pair
-        for (Map.Entry<String, Boolean> entry : this.collection.entrySet()) {
-            System.out.printf("%-40s %-10s%n", entry.getKey(), entry.getValue());
-        }
+        this.collection.forEach((title, available) -> System.out.printf("%-40s %-10s%n", title, available));
     }
 
     /**
@@ -208,6 +816,10 @@ public class Library extends Building {
 
         Neilson.checkOut("R for Data Science");
 
+        // Place a hold on a borrowed book; it is checked out to the patron as soon as it comes back
+        Neilson.placeHold("R for Data Science").thenAccept(title -> System.out.println("Your hold on " + title + " is ready."));
+        Neilson.returnBook("R for Data Science");
+
         // Return Book
         try {
             Neilson.returnBook("Fifty Shades of Grey");
@@ -218,14 +830,45 @@ public class Library extends Building {
         // Check if available
         Neilson.isAvailable("10 things I love about you");
 
+        // Try several titles in turn without exceptions, taking the first one that is on the shelf
+        for (String title : new String[] { "Hunger Games", "R for Data Science", "Harry Potter" }) {
+            Status status = Neilson.tryCheckOut(title);
+            System.out.println(title + ": " + status);
+            if (status.isOk()) {
+                break;
+            }
+        }
+
         // Print the collection
         Neilson.printCollection();
 
+        // Search the collection
+        System.out.println(Neilson.searchByPrefix("the", 0, 10, false));
+        System.out.println(Neilson.searchByKeyword("science", 0, 10, true));
+
+        // Load a whole file of titles at once
+        try {
+            Path acquisitions = Files.createTempFile("acquisitions", ".txt");
+            Files.write(acquisitions, List.of("Beloved", "The Outsiders", "Middlemarch", "", "Beloved"));
+            System.out.println(Neilson.ingest(acquisitions).getTitlesAdded() + " new titles ingested.");
+            Files.delete(acquisitions);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+
         // Test overloaded methods
         Library smallLibrary = new Library("Neighborhood Library", "222 Elm St"); // Using overloaded constructor
         ArrayList<String> newBooks = new ArrayList<>();
         newBooks.add("To Kill a Mockingbird");
         newBooks.add("The Great Gatsby");
         smallLibrary.addTitle(newBooks); // Using overloaded addTitle
+
+        // A consortium catalog stored compactly, with availability in a bitmap
+        Library consortium = new Library("Five College Consortium", "1 Consortium Way", 1, false, true);
+        consortium.addTitle(newBooks);
+        consortium.addTitle("Beloved");
+        consortium.checkOut("Beloved");
+        System.out.println(consortium.nAvailable() + " available, " + consortium.nCheckedOut() + " checked out.");
+        consortium.forEachAvailable(System.out::println);
     }
 }
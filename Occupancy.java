@@ -0,0 +1,312 @@
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An Occupancy counts how many visitors are on each floor of a Building and, if capacities are set, controls how many are let in.
+ * Counting is contention-free: each floor has its own LongAdder, so thousands of visitors can move at once without waiting on each other.
+ * A floor or the building as a whole only gets a limit, a fair Semaphore, once a capacity is set for it, so floors without one cost nothing extra.
+ * When a visitor tries to enter a full building or move to a full floor, the policy decides what happens:
+ * REJECT turns the visitor away at once, WAIT queues the visitor until someone leaves, and TIMEOUT waits in the queue for a while
+ * and then turns the visitor away, so a crowd backs off instead of piling up.
+ * A waiting visitor stays where it was, so it still counts against its current floor.
+ */
+public class Occupancy {
+
+    /**
+     * What happens to a visitor who tries to enter a full building or move to a full floor.
+     */
+    public enum Policy { REJECT, WAIT, TIMEOUT }
+
+    /**
+     * The capacity of a floor or building with no limit.
+     */
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private final Building building;
+    private final LongAdder[] onFloor; // Visitors on each floor, by floor number; index 0 is unused
+    private final AtomicReferenceArray<Limit> floorLimits; // By floor number, or null for no limit
+    private volatile Limit buildingLimit; // Or null for no limit
+    private volatile Policy policy = Policy.REJECT;
+    private volatile long timeoutNanos;
+
+    /**
+     * A fair semaphore whose number of permits can be lowered as well as raised when its capacity changes.
+     */
+    private static final class Limit extends Semaphore {
+        private static final long serialVersionUID = 1L;
+        private volatile int capacity; // Only changed under the Occupancy's lock
+
+        Limit(int capacity, int inUse) {
+            super(capacity - inUse, true);
+            this.capacity = capacity;
+        }
+
+        void resize(int capacity) {
+            int change = capacity - this.capacity;
+            this.capacity = capacity;
+            if (change > 0) {
+                release(change);
+            } else {
+                reducePermits(-change);
+            }
+        }
+    }
+
+    /**
+     * A reading of how many visitors were on each floor, and the capacities in force at the time.
+     * Each floor's count is exact when it is read, but a visitor moving between floors while the snapshot is taken
+     * may be counted on both.
+     */
+    public static final class Snapshot {
+        private final int inside;
+        private final int[] onFloor;
+        private final int buildingCapacity;
+        private final int[] floorCapacity;
+
+        Snapshot(int inside, int[] onFloor, int buildingCapacity, int[] floorCapacity) {
+            this.inside = inside;
+            this.onFloor = onFloor;
+            this.buildingCapacity = buildingCapacity;
+            this.floorCapacity = floorCapacity;
+        }
+
+        /* Accessors */
+        public int getInside() {
+            return this.inside;
+        }
+
+        public int getOnFloor(int floorNum) {
+            return this.onFloor[floorNum];
+        }
+
+        public int getBuildingCapacity() {
+            return this.buildingCapacity;
+        }
+
+        public int getFloorCapacity(int floorNum) {
+            return this.floorCapacity[floorNum];
+        }
+
+        public int getFloors() {
+            return this.onFloor.length - 1;
+        }
+
+        public String toString() {
+            StringBuilder s = new StringBuilder().append(this.inside).append(" inside");
+            if (this.buildingCapacity != UNLIMITED) {
+                s.append(" (capacity ").append(this.buildingCapacity).append(")");
+            }
+            for (int f = 1; f < this.onFloor.length; f++) {
+                s.append(f == 1 ? ": " : ", ").append("floor #").append(f).append(" ").append(this.onFloor[f]);
+                if (this.floorCapacity[f] != UNLIMITED) {
+                    s.append("/").append(this.floorCapacity[f]);
+                }
+            }
+            return s.toString();
+        }
+    }
+
+    Occupancy(Building building) {
+        this.building = building;
+        this.onFloor = new LongAdder[building.getFloors() + 1];
+        for (int f = 1; f < this.onFloor.length; f++) {
+            this.onFloor[f] = new LongAdder();
+        }
+        this.floorLimits = new AtomicReferenceArray<>(building.getFloors() + 1);
+    }
+
+    /**
+     * Sets how many visitors may be inside the building at once.
+     * Lowering it below the number inside turns newcomers away until enough have left; nobody is made to leave.
+     *
+     * @param capacity the most visitors allowed inside, or UNLIMITED
+     * @throws RuntimeException if the capacity is negative
+     */
+    public synchronized void setBuildingCapacity(int capacity) {
+        checkCapacity(capacity);
+        this.buildingLimit = limit(this.buildingLimit, capacity, this.building.nVisitors());
+    }
+
+    /**
+     * Sets how many visitors may be on a floor at once.
+     * Lowering it below the number on the floor keeps newcomers off until enough have left; nobody is made to leave.
+     * Limits are meant to be set up before the building gets busy: visitors moving onto a floor just as it first gets a limit,
+     * or just as its limit is removed, may not be counted against it.
+     *
+     * @param floorNum the floor to limit
+     * @param capacity the most visitors allowed on the floor, or UNLIMITED
+     * @throws RuntimeException if the floor does not exist or the capacity is negative
+     */
+    public synchronized void setFloorCapacity(int floorNum, int capacity) {
+        checkFloor(floorNum);
+        checkCapacity(capacity);
+        this.floorLimits.set(floorNum, limit(this.floorLimits.get(floorNum), capacity, nOnFloor(floorNum)));
+    }
+
+    /**
+     * Sets what happens to visitors who try to enter a full building or move to a full floor.
+     *
+     * @param policy        REJECT to turn them away at once, WAIT to queue them until there is room,
+     *                      or TIMEOUT to queue them for at most timeoutMillis
+     * @param timeoutMillis how long a TIMEOUT visitor waits before being turned away; ignored by the other policies
+     * @throws RuntimeException if the policy is TIMEOUT and the timeout is not positive
+     */
+    public void setPolicy(Policy policy, long timeoutMillis) {
+        if (policy == Policy.TIMEOUT && timeoutMillis <= 0) {
+            throw new RuntimeException("A timeout policy needs a positive timeout.");
+        }
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.policy = policy;
+    }
+
+    /* Accessors */
+    public Policy getPolicy() {
+        return this.policy;
+    }
+
+    public int getBuildingCapacity() {
+        Limit limit = this.buildingLimit;
+        return limit == null ? UNLIMITED : limit.capacity;
+    }
+
+    public int getFloorCapacity(int floorNum) {
+        checkFloor(floorNum);
+        Limit limit = this.floorLimits.get(floorNum);
+        return limit == null ? UNLIMITED : limit.capacity;
+    }
+
+    /**
+     * Gets the number of visitors on a floor.
+     *
+     * @param floorNum the floor to count
+     * @return the number of visitors on it
+     * @throws RuntimeException if the floor does not exist
+     */
+    public int nOnFloor(int floorNum) {
+        checkFloor(floorNum);
+        return this.onFloor[floorNum].intValue();
+    }
+
+    /**
+     * Reads every floor's count and capacity.
+     *
+     * @return the current occupancy of each floor
+     */
+    public Snapshot snapshot() {
+        int n = this.onFloor.length;
+        int[] counts = new int[n];
+        int[] capacities = new int[n];
+        for (int f = 1; f < n; f++) {
+            counts[f] = this.onFloor[f].intValue();
+            capacities[f] = getFloorCapacity(f);
+        }
+        return new Snapshot(this.building.nVisitors(), counts, getBuildingCapacity(), capacities);
+    }
+
+    public String toString() {
+        return this.building.getName() + ": " + snapshot();
+    }
+
+    /*
+     * Called by Building as visitors come and go. A visitor holds a place in the limit of the building and of its floor,
+     * if they have one, and gives it back to whichever limit is in force when it leaves.
+     */
+
+    // Lets a visitor in on the ground floor, unless the policy turns it away
+    Status enter() {
+        Limit building = this.buildingLimit;
+        Status status = building == null ? Status.OK : admit(building);
+        if (status != Status.OK) {
+            return status;
+        }
+        Limit ground = this.floorLimits.get(1);
+        status = ground == null ? Status.OK : admit(ground);
+        if (status != Status.OK) {
+            if (building != null) {
+                building.release();
+            }
+            return status;
+        }
+        this.onFloor[1].increment();
+        return Status.OK;
+    }
+
+    // Moves a visitor between floors once the new floor has room, unless the policy turns it away
+    Status move(int fromFloor, int toFloor) {
+        if (fromFloor == toFloor) {
+            return Status.OK;
+        }
+        Limit to = this.floorLimits.get(toFloor);
+        Status status = to == null ? Status.OK : admit(to);
+        if (status != Status.OK) {
+            return status;
+        }
+        this.onFloor[toFloor].increment();
+        leave(fromFloor);
+        return Status.OK;
+    }
+
+    void exit(int fromFloor) {
+        leave(fromFloor);
+        Limit building = this.buildingLimit;
+        if (building != null) {
+            building.release();
+        }
+    }
+
+    private void leave(int floorNum) {
+        this.onFloor[floorNum].decrement();
+        Limit from = this.floorLimits.get(floorNum);
+        if (from != null) {
+            from.release();
+        }
+    }
+
+    private Status admit(Limit limit) {
+        boolean admitted;
+        try {
+            switch (this.policy) {
+                case WAIT:
+                    limit.acquire();
+                    admitted = true;
+                    break;
+                case TIMEOUT:
+                    admitted = limit.tryAcquire(this.timeoutNanos, TimeUnit.NANOSECONDS);
+                    break;
+                default:
+                    admitted = limit.tryAcquire();
+                    break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Status.INTERRUPTED;
+        }
+        return admitted ? Status.OK : Status.FULL;
+    }
+
+    // The limit to use for a new capacity: the current one resized, a new one counting everyone already there, or none
+    private static Limit limit(Limit current, int capacity, int inUse) {
+        if (capacity == UNLIMITED) {
+            return null;
+        }
+        if (current == null) {
+            return new Limit(capacity, inUse);
+        }
+        current.resize(capacity);
+        return current;
+    }
+
+    private void checkFloor(int floorNum) {
+        if (floorNum < 1 || floorNum >= this.onFloor.length) {
+            throw new RuntimeException("Invalid floor number. Valid range for this Building is 1-" + (this.onFloor.length - 1) + ".");
+        }
+    }
+
+    private static void checkCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new RuntimeException("A capacity cannot be negative.");
+        }
+    }
+}
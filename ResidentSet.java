@@ -0,0 +1,199 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A ResidentSet holds the names of a House's residents in the order they moved in.
+ * Names live in a plain array in insertion order, and a separate open-addressing table of
+ * array positions makes membership checks, move-ins, and move-outs O(1). Apart from the names
+ * themselves, each resident costs one array slot plus a few table ints, so the set stays close to
+ * the footprint of an ArrayList rather than the per-entry objects of a LinkedHashSet.
+ */
+public class ResidentSet implements Iterable<String> {
+
+    private static final int EMPTY = 0; // Table slot never used
+    private static final int REMOVED = -1; // Table slot whose resident moved out
+
+    private String[] names; // Residents in move-in order; null where someone moved out
+    private int[] table; // Positions in names, offset by one so 0 can mean EMPTY
+    private int used; // Slots of names used so far, including moved-out ones
+    private int size; // Current number of residents
+
+    /* Default constructor, initializes an empty set */
+    public ResidentSet() {
+        this(8);
+    }
+
+    /**
+     * Constructs an empty ResidentSet with room for the given number of residents.
+     *
+     * @param capacity the number of residents to make room for
+     */
+    public ResidentSet(int capacity) {
+        this.names = new String[Math.max(capacity, 1)];
+        this.table = new int[tableSizeFor(this.names.length)];
+    }
+
+    /**
+     * Gets the number of residents.
+     *
+     * @return the number of residents
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Checks whether a name is in the set.
+     *
+     * @param name the name to look for
+     * @return true if the name is in the set; false otherwise
+     */
+    public boolean contains(String name) {
+        return name != null && this.find(name) >= 0;
+    }
+
+    /**
+     * Adds a name to the end of the set if it is not already present.
+     *
+     * @param name the name to add
+     * @return true if the name was added; false if it was already present
+     * @throws RuntimeException if the name is null
+     */
+    public boolean add(String name) {
+        if (name == null) {
+            throw new RuntimeException("Resident name cannot be null.");
+        }
+        if (this.find(name) >= 0) {
+            return false;
+        }
+        if (this.used == this.names.length) {
+            this.resize(this.size + 1);
+        }
+        this.names[this.used] = name;
+        this.insert(name, this.used);
+        this.used++;
+        this.size++;
+        return true;
+    }
+
+    /**
+     * Makes room for the given number of additional names, so a bulk add does at most one resize.
+     *
+     * @param additional the number of names about to be added
+     */
+    public void ensureCapacity(int additional) {
+        if (this.used + additional > this.names.length) {
+            this.resize(this.size + additional);
+        }
+    }
+
+    /**
+     * Removes a name from the set.
+     *
+     * @param name the name to remove
+     * @return true if the name was removed; false if it was not present
+     */
+    public boolean remove(String name) {
+        if (name == null) {
+            return false;
+        }
+        int slot = this.find(name);
+        if (slot < 0) {
+            return false;
+        }
+        this.names[this.table[slot] - 1] = null;
+        this.table[slot] = REMOVED;
+        this.size--;
+        return true;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int next = advance(0);
+
+            private int advance(int from) {
+                while (from < used && names[from] == null) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.next < used;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String name = names[this.next];
+                this.next = advance(this.next + 1);
+                return name;
+            }
+        };
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (String name : this) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(name);
+        }
+        return sb.append(']').toString();
+    }
+
+    // Returns the table slot holding the name, or -1 if it is not present
+    private int find(String name) {
+        int mask = this.table.length - 1;
+        for (int i = spread(name.hashCode()) & mask; ; i = (i + 1) & mask) {
+            int entry = this.table[i];
+            if (entry == EMPTY) {
+                return -1;
+            }
+            if (entry != REMOVED && name.equals(this.names[entry - 1])) {
+                return i;
+            }
+        }
+    }
+
+    private void insert(String name, int position) {
+        int mask = this.table.length - 1;
+        int i = spread(name.hashCode()) & mask;
+        while (this.table[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        this.table[i] = position + 1;
+    }
+
+    // Squeezes out moved-out slots, grows if needed, and rebuilds the table without REMOVED markers
+    private void resize(int needed) {
+        int capacity = Math.max(needed, this.size + (this.size >> 1) + 1);
+        String[] compacted = new String[Math.max(capacity, this.names.length)];
+        int n = 0;
+        for (int i = 0; i < this.used; i++) {
+            if (this.names[i] != null) {
+                compacted[n++] = this.names[i];
+            }
+        }
+        this.names = compacted;
+        this.used = n;
+        this.table = new int[tableSizeFor(compacted.length)];
+        for (int i = 0; i < n; i++) {
+            this.insert(compacted[i], i);
+        }
+    }
+
+    // Keeps the table at most half full, counting REMOVED markers, since it is rebuilt whenever names fills up
+    private static int tableSizeFor(int capacity) {
+        return Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) << 1;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+}
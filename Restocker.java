@@ -0,0 +1,250 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A Restocker keeps a Cafe stocked from a background thread, so no customer waits while the cafe restocks in the middle of a sale.
+ * Each resource has a low-water mark and a high-water mark.
+ * The restocker tracks how fast each resource is being used and raises both marks by what the cafe would use over the lead time.
+ * When a resource falls below its raised low-water mark, the restocker tops it back up to the raised high-water mark in one delivery.
+ * Busy cafes therefore get bigger deliveries, made sooner, instead of many small ones.
+ * A sale that still finds the cafe short asks the restocker to hurry and waits for the delivery instead of restocking itself.
+ */
+public class Restocker implements AutoCloseable {
+
+    /**
+     * The resources a Restocker looks after, in the order its arrays hold them.
+     */
+    public enum Resource { COFFEE, SUGAR, CREAMS, CUPS }
+
+    private static final double RATE_TIME_CONSTANT = 5.0; // Seconds over which the sales rate is averaged
+    private static final long SHORTAGE_TIMEOUT_MILLIS = 5_000;
+
+    private final Cafe cafe;
+    private final long periodNanos;
+    private final double leadSeconds;
+    private final AtomicIntegerArray low = new AtomicIntegerArray(4);
+    private final AtomicIntegerArray high = new AtomicIntegerArray(4);
+    private final AtomicIntegerArray shortfall = new AtomicIntegerArray(4); // Largest amount a waiting sale needs, until delivered
+    private final AtomicBoolean hurry = new AtomicBoolean(); // Whether a check has been asked for ahead of schedule
+    private final Object delivered = new Object(); // Sales waiting out a shortage wait on this for the next check
+    private final Thread worker;
+    private final double[] rate = new double[4]; // Worker only; units used per second
+    private final int[] lastLevels = new int[4]; // Worker only
+    private long lastSample; // Worker only
+    private volatile long deliveries; // Deliveries made so far
+    private long checks; // Guarded by delivered; checks finished so far
+    private volatile boolean closed;
+
+    /**
+     * Constructs a Restocker that checks the cafe ten times a second and plans two seconds ahead.
+     * The low-water marks start at a quarter of the cafe's current levels and the high-water marks at its current levels.
+     *
+     * @param cafe the cafe to keep stocked
+     * @throws RuntimeException if the cafe already has a restocker
+     */
+    public Restocker(Cafe cafe) {
+        this(cafe, 100, 2.0);
+    }
+
+    /**
+     * Constructs a Restocker and starts its background thread.
+     * The low-water marks start at a quarter of the cafe's current levels and the high-water marks at its current levels.
+     *
+     * @param cafe         the cafe to keep stocked
+     * @param periodMillis how often to check the cafe's levels when no sale has asked for a check
+     * @param leadSeconds  how far ahead to plan: the marks are raised by what the cafe would use over this long
+     * @throws RuntimeException if the cafe already has a restocker
+     */
+    public Restocker(Cafe cafe, long periodMillis, double leadSeconds) {
+        if (periodMillis < 1 || leadSeconds < 0) {
+            throw new RuntimeException("A restocker needs a positive check period and a lead time of at least 0 seconds.");
+        }
+        this.cafe = cafe;
+        this.periodNanos = periodMillis * 1_000_000L;
+        this.leadSeconds = leadSeconds;
+        Inventory.Levels levels = cafe.inventoryLevels();
+        int[] current = { levels.coffee, levels.sugar, levels.creams, levels.cups };
+        for (int r = 0; r < 4; r++) {
+            this.high.set(r, Math.max(current[r], 1));
+            this.low.set(r, this.high.get(r) / 4);
+            this.lastLevels[r] = current[r];
+        }
+        this.lastSample = System.nanoTime();
+        cafe.attachRestocker(this);
+        this.worker = new Thread(this::restockLoop, "restocker-" + cafe.getName());
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Sets the low-water and high-water marks for one resource, before they are raised for the current sales rate.
+     *
+     * @param resource  the resource to set the marks for
+     * @param lowWater  restock once the level falls below this
+     * @param highWater restock up to this
+     * @throws RuntimeException if the marks are negative or the high-water mark is below the low-water mark
+     */
+    public void setMarks(Resource resource, int lowWater, int highWater) {
+        if (lowWater < 0 || highWater < lowWater || highWater < 1) {
+            throw new RuntimeException("The high-water mark must be positive and at least the low-water mark.");
+        }
+        this.high.set(resource.ordinal(), highWater);
+        this.low.set(resource.ordinal(), lowWater);
+    }
+
+    /* Accessors */
+    public int getLowWater(Resource resource) {
+        return this.low.get(resource.ordinal());
+    }
+
+    public int getHighWater(Resource resource) {
+        return this.high.get(resource.ordinal());
+    }
+
+    public long getDeliveries() {
+        return this.deliveries;
+    }
+
+    /**
+     * Called by the cafe after a sale: if the sale left any resource below its low-water mark, checks ahead of schedule.
+     */
+    void sold(Inventory.Levels levels) {
+        if (levels.coffee < this.low.get(0) || levels.sugar < this.low.get(1)
+            || levels.creams < this.low.get(2) || levels.cups < this.low.get(3)) {
+            hurry();
+        }
+    }
+
+    /**
+     * Called by the cafe when a sale cannot be filled: asks for a delivery that covers it and waits for the next check,
+     * after which the sale tries again.
+     *
+     * @return true if a delivery was made while waiting
+     * @throws RuntimeException if the restocker does not get to the shortage in time
+     */
+    boolean awaitStock(int coffee, int sugar, int creams, int cups) {
+        long seen;
+        long deliveredBefore = this.deliveries;
+        synchronized (this.delivered) {
+            seen = this.checks;
+        }
+        int[] needed = { coffee, sugar, creams, cups };
+        for (int r = 0; r < 4; r++) {
+            this.shortfall.accumulateAndGet(r, needed[r], Math::max);
+        }
+        hurry();
+        long deadline = System.nanoTime() + SHORTAGE_TIMEOUT_MILLIS * 1_000_000L;
+        synchronized (this.delivered) {
+            while (this.checks == seen && !this.closed) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new RuntimeException("Timed out waiting for " + this.cafe.getName() + " to be restocked.");
+                }
+                try {
+                    this.delivered.wait(remaining / 1_000_000L + 1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for " + this.cafe.getName() + " to be restocked.");
+                }
+            }
+        }
+        return this.deliveries != deliveredBefore;
+    }
+
+    private void hurry() {
+        if (this.hurry.compareAndSet(false, true)) {
+            LockSupport.unpark(this.worker);
+        }
+    }
+
+    private void restockLoop() {
+        while (!this.closed) {
+            this.hurry.set(false);
+            check();
+            if (!this.hurry.get()) {
+                LockSupport.parkNanos(this, this.periodNanos);
+            }
+        }
+    }
+
+    // Updates the sales rates and, if anything is running low, makes one delivery that tops everything low back up
+    private void check() {
+        Inventory.Levels levels = this.cafe.inventoryLevels();
+        int[] current = { levels.coffee, levels.sugar, levels.creams, levels.cups };
+        long now = System.nanoTime();
+        double elapsed = (now - this.lastSample) / 1e9;
+        this.lastSample = now;
+
+        // Averaged over a fixed time constant so the rate is the same however often we sample
+        double weight = 1 - Math.exp(-elapsed / RATE_TIME_CONSTANT);
+        int[] amounts = new int[4];
+        boolean needed = false;
+        for (int r = 0; r < 4; r++) {
+            int used = Math.max(this.lastLevels[r] - current[r], 0);
+            if (elapsed > 0) {
+                this.rate[r] += weight * (used / elapsed - this.rate[r]);
+            }
+            double ahead = this.rate[r] * this.leadSeconds;
+            long reorderAt = (long) Math.ceil(this.low.get(r) + ahead);
+            long target = Math.max((long) Math.ceil(this.high.get(r) + ahead), reorderAt);
+            int shortfall = this.shortfall.getAndSet(r, 0);
+            if (current[r] < reorderAt || current[r] < shortfall) {
+                target = Math.max(target, shortfall);
+                amounts[r] = (int) Math.min(target - current[r], Integer.MAX_VALUE - (long) Math.max(current[r], 0));
+                needed |= amounts[r] > 0;
+            }
+        }
+
+        if (needed) {
+            Inventory.Levels before = this.cafe.replenish(amounts[0], amounts[1], amounts[2], amounts[3]);
+            current[0] = before.coffee + amounts[0];
+            current[1] = before.sugar + amounts[1];
+            current[2] = before.creams + amounts[2];
+            current[3] = before.cups + amounts[3];
+            this.deliveries++;
+        }
+        System.arraycopy(current, 0, this.lastLevels, 0, 4);
+        synchronized (this.delivered) {
+            this.checks++;
+            this.delivered.notifyAll();
+        }
+    }
+
+    /**
+     * Stops the background thread and hands restocking back to the cafe's sales.
+     */
+    @Override
+    public void close() {
+        this.cafe.detachRestocker(this);
+        this.closed = true;
+        LockSupport.unpark(this.worker);
+        synchronized (this.delivered) {
+            this.delivered.notifyAll();
+        }
+        try {
+            this.worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String toString() {
+        return String.format("Restocking %s: %d deliveries so far, using %.1f oz coffee, %.1f sugar, %.1f creams, %.1f cups per second.",
+                             this.cafe.getName(), this.deliveries, this.rate[0], this.rate[1], this.rate[2], this.rate[3]);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Cafe cafe = new Cafe("Campus Center", "100 Elm Street", 2, 200, 40, 40, 20);
+        Restocker restocker = new Restocker(cafe, 50, 1.0);
+        restocker.setMarks(Resource.CUPS, 10, 40);
+
+        // A lunch rush: sales never restock, the restocker keeps ahead of them in the background
+        for (int i = 0; i < 60; i++) {
+            cafe.sellCoffee(12, 1, 1);
+            Thread.sleep(20);
+        }
+        System.out.println(restocker);
+        restocker.close();
+    }
+}
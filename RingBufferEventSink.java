@@ -0,0 +1,148 @@
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A RingBufferEventSink hands events to a background writer thread through a bounded ring buffer.
+ * Publishing never blocks: it claims a slot with a single compare-and-set, and if the buffer is
+ * full the event is dropped and counted. The writer thread formats events in batches and writes
+ * each batch to its stream in one call, so the console lock is taken once per batch rather than once per event.
+ */
+public class RingBufferEventSink implements EventSink, AutoCloseable {
+
+    private static final int MAX_BATCH = 1024;
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+    private static final long SEALED = 1L << 62; // Set in tail by close(), so a publisher that has not claimed a slot yet never will
+
+    private final AtomicReferenceArray<BuildingEvent> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(); // Next slot a publisher will claim, plus SEALED once closed
+    private volatile long head; // Next slot the writer will drain; only written by the writer thread
+    private final LongAdder dropped = new LongAdder();
+    private final PrintStream out;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /* Default constructor, buffers up to 8192 events for standard output */
+    public RingBufferEventSink() {
+        this(System.out, 8192);
+    }
+
+    /**
+     * Constructs a RingBufferEventSink and starts its writer thread.
+     *
+     * @param out      the stream the writer thread prints messages to
+     * @param capacity the number of events the buffer can hold, rounded up to a power of two
+     */
+    public RingBufferEventSink(PrintStream out, int capacity) {
+        if (capacity < 1) {
+            throw new RuntimeException("Cannot construct a ring buffer with fewer than 1 slot.");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.out = out;
+        this.writer = new Thread(this::drainLoop, "building-event-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Publishes an event without blocking. If the buffer is full the event is dropped.
+     *
+     * @param event the event to publish
+     */
+    @Override
+    public void publish(BuildingEvent event) {
+        while (true) {
+            long t = this.tail.get();
+            if (t - this.head > this.mask || this.closed) {
+                this.dropped.increment();
+                return;
+            }
+            if (this.tail.compareAndSet(t, t + 1)) {
+                this.slots.lazySet((int) t & this.mask, event);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of events dropped because the buffer was full or the sink was closed.
+     *
+     * @return the number of dropped events
+     */
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    /**
+     * Waits until every event published so far has been written.
+     */
+    public void flush() {
+        long target = this.tail.get() & ~SEALED;
+        while (this.head < target && this.writer.isAlive()) {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Writes any remaining events and stops the writer thread. Events published from now on are dropped.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        // Publishers that saw the sink open are still racing to claim a slot; sealing the tail makes them retry and drop
+        long t = this.tail.get();
+        while ((t & SEALED) == 0 && !this.tail.compareAndSet(t, t | SEALED)) {
+            t = this.tail.get();
+        }
+        LockSupport.unpark(this.writer);
+        try {
+            this.writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainLoop() {
+        StringBuilder batch = new StringBuilder();
+        while (true) {
+            long h = this.head;
+            int n = 0;
+            while (n < MAX_BATCH) {
+                int index = (int) (h + n) & this.mask;
+                BuildingEvent event = this.slots.get(index);
+                if (event == null) {
+                    break; // Either the buffer is empty or the publisher has not finished writing this slot
+                }
+                this.slots.lazySet(index, null);
+                String message = event.toMessage();
+                if (message != null) {
+                    batch.append(message).append(System.lineSeparator());
+                }
+                n++;
+            }
+            if (n > 0) {
+                if (batch.length() > 0) {
+                    this.out.print(batch);
+                    this.out.flush();
+                    batch.setLength(0);
+                }
+                this.head = h + n;
+            } else if ((this.tail.get() & SEALED) != 0) {
+                if (h == (this.tail.get() & ~SEALED)) {
+                    return; // Every claimed slot has been written
+                }
+                Thread.onSpinWait(); // A publisher claimed this slot before the seal and is about to fill it
+            } else {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+}
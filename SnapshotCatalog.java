@@ -0,0 +1,113 @@
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * A SnapshotCatalog serves a Library's collection straight from a memory-mapped catalog snapshot until the first change,
+ * so a library opened from a snapshot of any size is ready at once, and lookups only decode the titles they touch.
+ * The first change copies the snapshot, in parallel, into a HashCatalog or BitmapCatalog, which serves everything from then on.
+ * A lookup made while the copy is being made still reads the snapshot, which is the state the change has not yet altered.
+ */
+class SnapshotCatalog implements Catalog {
+
+    private final CatalogSnapshot snapshot;
+    private final boolean compact;
+    private volatile Catalog loaded; // Null until the first change
+
+    SnapshotCatalog(CatalogSnapshot snapshot, boolean compact) {
+        this.snapshot = snapshot;
+        this.compact = compact;
+    }
+
+    // The mutable copy of the snapshot, made on the first change
+    private Catalog loaded() {
+        Catalog current = this.loaded;
+        if (current == null) {
+            synchronized (this) {
+                current = this.loaded;
+                if (current == null) {
+                    Catalog copy = this.compact ? new BitmapCatalog() : new HashCatalog(this.snapshot.size());
+                    IntStream.range(0, this.snapshot.size()).parallel()
+                             .forEach(i -> copy.add(this.snapshot.title(i), this.snapshot.isAvailable(i)));
+                    this.loaded = copy;
+                    current = copy;
+                }
+            }
+        }
+        return current;
+    }
+
+    @Override
+    public boolean add(String title, boolean available) {
+        return loaded().add(title, available);
+    }
+
+    @Override
+    public Boolean remove(String title) {
+        return loaded().remove(title);
+    }
+
+    @Override
+    public boolean checkOut(String title) {
+        return loaded().checkOut(title);
+    }
+
+    @Override
+    public Boolean checkIn(String title) {
+        return loaded().checkIn(title);
+    }
+
+    @Override
+    public Boolean get(String title) {
+        Catalog current = this.loaded;
+        if (current != null) {
+            return current.get(title);
+        }
+        int i = this.snapshot.find(title);
+        return i < 0 ? null : this.snapshot.isAvailable(i);
+    }
+
+    @Override
+    public int size() {
+        Catalog current = this.loaded;
+        return current != null ? current.size() : this.snapshot.size();
+    }
+
+    @Override
+    public long nAvailable() {
+        Catalog current = this.loaded;
+        return current != null ? current.nAvailable() : this.snapshot.nAvailable();
+    }
+
+    @Override
+    public long nCheckedOut() {
+        Catalog current = this.loaded;
+        return current != null ? current.nCheckedOut() : this.snapshot.size() - this.snapshot.nAvailable();
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, Boolean> action) {
+        Catalog current = this.loaded;
+        if (current != null) {
+            current.forEach(action);
+            return;
+        }
+        for (int i = 0; i < this.snapshot.size(); i++) {
+            action.accept(this.snapshot.title(i), this.snapshot.isAvailable(i));
+        }
+    }
+
+    @Override
+    public void forEachAvailable(Consumer<String> action) {
+        Catalog current = this.loaded;
+        if (current != null) {
+            current.forEachAvailable(action);
+            return;
+        }
+        for (int i = 0; i < this.snapshot.size(); i++) {
+            if (this.snapshot.isAvailable(i)) {
+                action.accept(this.snapshot.title(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * A Status is the outcome of one of the try methods, such as Library.tryCheckOut or Visitor.tryGoToFloor.
+ * The try methods report expected failures by returning a Status instead of throwing, so a caller that often fails,
+ * such as one polling for a free copy of a book, pays nothing extra for each failure: no exception, no stack trace,
+ * and no message to build. Each throwing method does the same work as its try method and throws only if it fails.
+ * With the event sink set to EventSink.NONE and nobody subscribed to the building's events, a failed try method allocates
+ * nothing, and neither does a successful checkout, return, or floor move. Other successes still allocate what they create,
+ * such as the Visitor from tryEnter, and with any other sink every success builds an event.
+ */
+public enum Status {
+    OK, // The operation was done
+    NOT_INSIDE, // The visitor has not entered the building, or has already left
+    WRONG_BUILDING, // The visitor is inside a different building
+    INVALID_FLOOR, // The building has no such floor
+    NO_ELEVATOR, // The floor is not adjacent and the building has no elevator
+    ABOVE_GROUND_FLOOR, // The visitor must be on the ground floor to leave
+    FULL, // The building or floor is at capacity and the occupancy policy turned the visitor away
+    INTERRUPTED, // The thread was interrupted while waiting for room; its interrupt flag is set again
+    NOT_FOUND, // The title or resident is not there
+    ALREADY_PRESENT, // The title or resident is already there
+    UNAVAILABLE, // The title is checked out
+    OUT_OF_STOCK; // The cafe does not have enough on hand for the sale
+
+    public boolean isOk() {
+        return this == OK;
+    }
+}
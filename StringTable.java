@@ -0,0 +1,131 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A StringTable stores each distinct string once, as UTF-8 bytes packed end to end in a single array, and hands out a
+ * small int id for it. Storing the id instead of the String saves the String and byte[] object headers, and any
+ * string used many times (such as a street shared by many buildings) is only stored once.
+ * Strings are never removed; to drop ones no longer in use, build a new table.
+ */
+class StringTable {
+
+    private byte[] data = new byte[256];
+    private int dataSize;
+    private int[] offsets = new int[17]; // String i is data[offsets[i], offsets[i + 1])
+    private int size;
+    private int[] slots = new int[32]; // Open-addressing hash table of id + 1; 0 means empty
+
+    /**
+     * Gets the id of a string, adding it to the table if it is not there yet.
+     */
+    int intern(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytes);
+        int slot = find(bytes, hash);
+        if (this.slots[slot] != 0) {
+            return this.slots[slot] - 1;
+        }
+        if (this.size + 1 == this.offsets.length) {
+            this.offsets = Arrays.copyOf(this.offsets, this.offsets.length * 2);
+        }
+        if (this.dataSize + bytes.length > this.data.length) {
+            this.data = Arrays.copyOf(this.data, Math.max(this.data.length * 2, this.dataSize + bytes.length));
+        }
+        System.arraycopy(bytes, 0, this.data, this.dataSize, bytes.length);
+        this.dataSize += bytes.length;
+        int id = this.size++;
+        this.offsets[this.size] = this.dataSize;
+        this.slots[slot] = id + 1;
+        if (this.size * 2 > this.slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * Gets the id of a string, or -1 if the table does not hold it.
+     * ASCII strings, whose chars are their UTF-8 bytes, are looked up without encoding them first.
+     */
+    int lookup(String s) {
+        int n = s.length();
+        int h = 1;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                return this.slots[find(bytes, hash(bytes))] - 1;
+            }
+            h = 31 * h + c;
+        }
+        int[] slots = this.slots;
+        int mask = slots.length - 1;
+        for (int slot = (h ^ (h >>> 16)) & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0 || asciiEquals(id, s)) {
+                return id;
+            }
+        }
+    }
+
+    private boolean asciiEquals(int id, String s) {
+        int from = this.offsets[id];
+        if (this.offsets[id + 1] - from != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (this.data[from + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the string with the given id.
+     */
+    String get(int id) {
+        return new String(this.data, this.offsets[id], this.offsets[id + 1] - this.offsets[id], StandardCharsets.UTF_8);
+    }
+
+    // The number of ids handed out so far; every id is below this
+    int size() {
+        return this.size;
+    }
+
+    private static int hash(byte[] bytes) {
+        int h = Arrays.hashCode(bytes);
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(byte[] data, int from, int to) {
+        int h = 1;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + data[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    // The slot holding these bytes, or the empty slot where they would go
+    private int find(byte[] bytes, int hash) {
+        int mask = this.slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = this.slots[slot] - 1;
+            if (id < 0 || Arrays.equals(this.data, this.offsets[id], this.offsets[id + 1], bytes, 0, bytes.length)) {
+                return slot;
+            }
+        }
+    }
+
+    private void rehash() {
+        int[] slots = new int[this.slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < this.size; id++) {
+            int slot = hash(this.data, this.offsets[id], this.offsets[id + 1]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+        this.slots = slots;
+    }
+}
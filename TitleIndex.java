@@ -0,0 +1,178 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+
+/**
+ * A TitleIndex supports prefix and keyword searches over a set of book titles.
+ * Titles are kept in a sorted map keyed by their lower-cased form for prefix queries,
+ * and in an inverted index from each lower-cased word to the titles containing it for keyword queries.
+ * Both structures are updated incrementally as titles are added and removed, and both are safe for concurrent use.
+ */
+public class TitleIndex {
+
+    private static final char SEPARATOR = '\u0000'; // Keeps titles that differ only by case as separate keys
+    // The order of the prefix map's keys: ignoring case, then by case for titles that differ only by case
+    private static final Comparator<String> ALPHABETICAL = Comparator.comparing(TitleIndex::normalize)
+                                                                     .thenComparing(Comparator.naturalOrder());
+
+    private final ConcurrentSkipListMap<String, String> byPrefix;
+    private final ConcurrentHashMap<String, Postings> byKeyword;
+
+    /**
+     * The sorted titles containing one word, with a count so the rarest word can be found cheaply.
+     * The count is only written inside the index map's atomic compute calls for that word.
+     */
+    private static final class Postings {
+        final ConcurrentSkipListSet<String> titles = new ConcurrentSkipListSet<>(ALPHABETICAL);
+        volatile int size;
+    }
+
+    /* Default constructor, initializes an empty index */
+    public TitleIndex() {
+        this.byPrefix = new ConcurrentSkipListMap<>();
+        this.byKeyword = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Adds a title to the index.
+     *
+     * @param title the title to add
+     */
+    public void add(String title) {
+        this.byPrefix.put(normalize(title) + SEPARATOR + title, title);
+        for (String word : words(title)) {
+            this.byKeyword.compute(word, (w, postings) -> {
+                if (postings == null) {
+                    postings = new Postings();
+                }
+                if (postings.titles.add(title)) {
+                    postings.size++;
+                }
+                return postings;
+            });
+        }
+    }
+
+    /**
+     * Removes a title from the index.
+     *
+     * @param title the title to remove
+     */
+    public void remove(String title) {
+        this.byPrefix.remove(normalize(title) + SEPARATOR + title);
+        for (String word : words(title)) {
+            this.byKeyword.computeIfPresent(word, (w, postings) -> {
+                if (postings.titles.remove(title)) {
+                    postings.size--;
+                }
+                return postings.size == 0 ? null : postings;
+            });
+        }
+    }
+
+    /**
+     * Finds titles that start with the given prefix, ignoring case, in alphabetical order.
+     *
+     * @param prefix the prefix to look for
+     * @param offset the number of matching titles to skip
+     * @param limit  the maximum number of titles to return
+     * @param filter only titles accepted by this filter are counted and returned
+     * @return the matching titles
+     */
+    public List<String> prefix(String prefix, int offset, int limit, Predicate<String> filter) {
+        String start = normalize(prefix);
+        List<String> results = new ArrayList<>(Math.min(limit, 64));
+        int skipped = 0;
+        for (Map.Entry<String, String> entry : this.byPrefix.tailMap(start).entrySet()) {
+            if (results.size() >= limit || !entry.getKey().startsWith(start)) {
+                break;
+            }
+            if (!filter.test(entry.getValue())) {
+                continue;
+            }
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                results.add(entry.getValue());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Finds titles that contain every word of the query, ignoring case, in alphabetical order.
+     *
+     * @param query  one or more words to look for
+     * @param offset the number of matching titles to skip
+     * @param limit  the maximum number of titles to return
+     * @param filter only titles accepted by this filter are counted and returned
+     * @return the matching titles
+     */
+    public List<String> keyword(String query, int offset, int limit, Predicate<String> filter) {
+        List<String> words = words(query);
+        List<String> results = new ArrayList<>(Math.min(limit, 64));
+        if (words.isEmpty()) {
+            return results;
+        }
+
+        // Walk the rarest word's titles and check the others against them
+        List<NavigableSet<String>> postings = new ArrayList<>(words.size());
+        Postings rarest = null;
+        for (String word : words) {
+            Postings found = this.byKeyword.get(word);
+            if (found == null) {
+                return results;
+            }
+            postings.add(found.titles);
+            if (rarest == null || found.size < rarest.size) {
+                rarest = found;
+            }
+        }
+
+        int skipped = 0;
+        for (String title : rarest.titles) {
+            if (results.size() >= limit) {
+                break;
+            }
+            if (!containsAll(postings, title) || !filter.test(title)) {
+                continue;
+            }
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                results.add(title);
+            }
+        }
+        return results;
+    }
+
+    private static boolean containsAll(List<NavigableSet<String>> postings, String title) {
+        for (NavigableSet<String> titles : postings) {
+            if (!titles.contains(title)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        for (String word : normalize(text).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty() && !words.contains(word)) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
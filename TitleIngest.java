@@ -0,0 +1,171 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * TitleIngest streams a file of titles, one per line, into a collection.
+ * The file is read through a channel a chunk at a time, and the lines are handed out in batches to worker threads,
+ * which insert them in parallel. Only a few batches are in flight at once, so memory stays bounded however large the file is.
+ */
+class TitleIngest {
+
+    private static final int CHUNK_BYTES = 1 << 20;
+    private static final int BATCH_TITLES = 16 * 1024;
+
+    private final Predicate<String> insert; // Adds a title if it is new, reporting whether it was
+    private final Consumer<IngestReport> progress;
+    private final Semaphore inFlight;
+    private final LongAdder added = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>(); // The first thing a batch threw, even an Error
+    private final int maxInFlight;
+    private final long start = System.nanoTime();
+    private long bytesRead;
+    private long linesRead;
+
+    private TitleIngest(Predicate<String> insert, Consumer<IngestReport> progress) {
+        this.insert = insert;
+        this.progress = progress;
+        this.maxInFlight = 2 * ForkJoinPool.getCommonPoolParallelism();
+        this.inFlight = new Semaphore(this.maxInFlight);
+    }
+
+    /**
+     * Reads a file of titles and inserts every non-blank line as a title.
+     * A trailing carriage return is dropped, so Windows line endings work too.
+     *
+     * @param file     the UTF-8 file to read
+     * @param insert   adds a title if it is not there yet and reports whether it added it; must be safe to call from many threads
+     * @param progress called with a running report after each batch is handed out, or null
+     * @return the final report
+     * @throws IOException if the file cannot be read
+     */
+    static IngestReport run(Path file, Predicate<String> insert, Consumer<IngestReport> progress) throws IOException {
+        return new TitleIngest(insert, progress).read(file);
+    }
+
+    private IngestReport read(Path file) throws IOException {
+        byte[] bytes = new byte[CHUNK_BYTES];
+        int filled = 0;
+        String[] batch = new String[BATCH_TITLES];
+        int nBatch = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (true) {
+                if (filled == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2); // A single line longer than a chunk
+                }
+                int n = channel.read(ByteBuffer.wrap(bytes, filled, bytes.length - filled));
+                boolean eof = n < 0;
+                if (!eof) {
+                    filled += n;
+                    this.bytesRead += n;
+                }
+
+                // Split off every complete line; at the end of the file the last line needs no newline
+                int lineStart = 0;
+                for (int i = 0; i < filled; i++) {
+                    if (bytes[i] == '\n') {
+                        if (line(bytes, lineStart, i, batch, nBatch)) {
+                            if (++nBatch == BATCH_TITLES) {
+                                submit(batch);
+                                batch = new String[BATCH_TITLES];
+                                nBatch = 0;
+                            }
+                        }
+                        lineStart = i + 1;
+                    }
+                }
+                if (eof) {
+                    if (lineStart < filled && line(bytes, lineStart, filled, batch, nBatch)) {
+                        nBatch++;
+                    }
+                    break;
+                }
+                System.arraycopy(bytes, lineStart, bytes, 0, filled - lineStart);
+                filled -= lineStart;
+            }
+        }
+        if (nBatch > 0) {
+            submit(Arrays.copyOf(batch, nBatch));
+        }
+
+        // Wait for every batch to finish
+        this.inFlight.acquireUninterruptibly(this.maxInFlight);
+        this.inFlight.release(this.maxInFlight);
+        throwFailure();
+        IngestReport report = report(true);
+        if (this.progress != null) {
+            this.progress.accept(report);
+        }
+        return report;
+    }
+
+    // Decodes one line into the batch, unless it is blank
+    private boolean line(byte[] bytes, int from, int to, String[] batch, int nBatch) {
+        this.linesRead++;
+        if (to > from && bytes[to - 1] == '\r') {
+            to--;
+        }
+        if (to == from) {
+            return false;
+        }
+        batch[nBatch] = new String(bytes, from, to - from, StandardCharsets.UTF_8);
+        return true;
+    }
+
+    private void submit(String[] batch) {
+        this.inFlight.acquireUninterruptibly(); // Wait here if the workers are behind, rather than piling up batches
+        if (this.failure.get() != null) {
+            this.inFlight.release();
+            throwFailure(); // Stop reading; the batches still running finish on their own
+        }
+        ForkJoinPool.commonPool().execute(() -> {
+            try {
+                int nAdded = 0;
+                for (String title : batch) {
+                    if (this.insert.test(title)) {
+                        nAdded++;
+                    }
+                }
+                this.added.add(nAdded);
+                this.duplicates.add(batch.length - nAdded);
+            } catch (Throwable e) {
+                this.failure.compareAndSet(null, e); // Even an Error, or the report would claim titles were read that never went in
+            } finally {
+                this.inFlight.release();
+            }
+        });
+        if (this.progress != null) {
+            this.progress.accept(report(false));
+        }
+    }
+
+    // Rethrows what a batch threw, so ingesting fails instead of finishing with titles missing
+    private void throwFailure() {
+        Throwable failed = this.failure.get();
+        if (failed instanceof RuntimeException) {
+            throw (RuntimeException) failed;
+        }
+        if (failed instanceof Error) {
+            throw (Error) failed;
+        }
+        if (failed != null) {
+            throw new RuntimeException("Ingesting titles failed.", failed);
+        }
+    }
+
+    private IngestReport report(boolean finished) {
+        return new IngestReport(this.bytesRead, this.linesRead, this.added.sum(), this.duplicates.sum(),
+                                System.nanoTime() - this.start, finished);
+    }
+}
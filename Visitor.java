@@ -0,0 +1,83 @@
+/**
+ * A Visitor is one person inside a Building, returned by enter().
+ * Each visitor keeps track of its own floor, so any number of visitors can be inside and moving around the same building at once.
+ * A single Visitor is meant to be used by one thread at a time; different visitors may be used from different threads freely.
+ */
+public class Visitor {
+
+    private final Building building;
+    volatile int floor = 1; // Every visit starts on the ground floor; -1 once the visitor has left
+
+    Visitor(Building building) {
+        this.building = building;
+    }
+
+    /* Accessors */
+    public Building getBuilding() {
+        return this.building;
+    }
+
+    public int getFloor() {
+        return this.floor;
+    }
+
+    /**
+     * Checks whether this visitor is still inside its building.
+     *
+     * @return true until exit() has been called; false afterwards
+     */
+    public boolean isInside() {
+        return this.floor != -1;
+    }
+
+    /**
+     * Moves this visitor to the specified floor, following the building's rules for moving between floors.
+     *
+     * @param floorNum the floor number to navigate to
+     * @throws RuntimeException if the visitor has left or the move is not allowed
+     */
+    public void goToFloor(int floorNum) {
+        this.building.goToFloor(this, floorNum);
+    }
+
+    /**
+     * Moves this visitor to the specified floor, like goToFloor, but reports why not instead of throwing.
+     *
+     * @param floorNum the floor number to navigate to
+     * @return OK, or the reason the visitor could not move, such as INVALID_FLOOR, NO_ELEVATOR, or FULL
+     */
+    public Status tryGoToFloor(int floorNum) {
+        return this.building.tryGoToFloor(this, floorNum);
+    }
+
+    public void goUp() {
+        this.goToFloor(this.floor + 1);
+    }
+
+    public void goDown() {
+        this.goToFloor(this.floor - 1);
+    }
+
+    /**
+     * Leaves the building. A visitor must be back on the ground floor to leave.
+     *
+     * @throws RuntimeException if the visitor has already left or is above the ground floor
+     */
+    public void exit() {
+        this.building.exit(this);
+    }
+
+    /**
+     * Leaves the building, like exit, but reports why not instead of throwing.
+     *
+     * @return OK, or NOT_INSIDE or ABOVE_GROUND_FLOOR
+     */
+    public Status tryExit() {
+        return this.building.tryExit(this);
+    }
+
+    public String toString() {
+        return isInside() ? "A visitor on floor #" + this.floor + " of " + this.building.getName() + "."
+                          : "A visitor who has left " + this.building.getName() + ".";
+    }
+}